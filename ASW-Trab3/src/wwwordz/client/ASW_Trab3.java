@@ -2,7 +2,6 @@ package wwwordz.client;
 
 import wwwordz.shared.Configs;
 import wwwordz.shared.Puzzle;
-import wwwordz.shared.Puzzle.Solution;
 import wwwordz.shared.Rank;
 
 import java.util.ArrayList;
@@ -71,9 +70,10 @@ public class ASW_Trab3 implements EntryPoint {
 	private static final int    CLOCK_INTERVAL  = 100;
 	
 	/**
-	 * Expected size of the puzzle grid.
+	 * Initial size of the puzzle grid, until a puzzle
+	 * 		of another size is shown.
 	 */
-	private static final int    MATRIX_SIZE	    = 4;
+	private static final int    MATRIX_SIZE	    = wwwordz.shared.Table.DEFAULT_SIZE;
 	
 	/**
 	 * Asynchronous service of Manager's implementation
@@ -886,14 +886,15 @@ public class ASW_Trab3 implements EntryPoint {
 	}
 	
 	/**
-	 * Reports back to the server the player's points, along
-	 * 		with its nickname, through Manager's setPoints
-	 * 		method.
+	 * Reports back to the server the words found by the player,
+	 * 		along with its nickname, through Manager's submitWords
+	 * 		method. The server scores them, and its score
+	 * 		replaces the one computed here.
 	 */
 	private void report() {
-		managerService.setPoints(playerName,
-								 playerPoints,
-								 new AsyncCallback<Void>() {
+		managerService.submitWords(playerName,
+								   new ArrayList<String>(wordsFound),
+								   new AsyncCallback<Integer>() {
 
 			@Override
 			public void onFailure(Throwable caught) {
@@ -903,7 +904,9 @@ public class ASW_Trab3 implements EntryPoint {
 			}
 
 			@Override
-			public void onSuccess(Void result) {
+			public void onSuccess(Integer result) {
+				playerPoints = result;
+				reportLabel.setText("Your score for this round is " + playerPoints);
 			}
 			
 		});
@@ -978,8 +981,8 @@ public class ASW_Trab3 implements EntryPoint {
 		 * 		instances it contains and providing
 		 * 		them unique handlers.
 		 * <br>
-		 * This is only performed once, since the widget
-		 * 		is fixed throughout the whole run.
+		 * The cells are created again only when a puzzle
+		 * 		of another size is shown.
 		 */
 		PuzzleGrid() {
 			selectedCells = new ArrayList<Widget>();
@@ -993,9 +996,23 @@ public class ASW_Trab3 implements EntryPoint {
 				}
 			};
 			
-			this.resize(MATRIX_SIZE, MATRIX_SIZE);
-			for(int row = 0; row < MATRIX_SIZE; row++) {
-				for (int column = 0; column < MATRIX_SIZE; column++) {
+			setBoardSize(MATRIX_SIZE);
+		}
+
+		/**
+		 * Resizes the PuzzleGrid to the given number of
+		 * 		rows and columns, creating new PuzzleCell
+		 * 		instances, unless it already has that size.
+		 * 
+		 * @param size - the number of rows (and columns) of the grid
+		 */
+		public void setBoardSize(int size) {
+			if (this.getRowCount() == size && this.getColumnCount() == size) {
+				return;
+			}
+			this.resize(size, size);
+			for(int row = 0; row < size; row++) {
+				for (int column = 0; column < size; column++) {
 					PuzzleCell cell = new PuzzleCell(row, column);
 					cell.addStyleName("puzzle-cell");
 					cell.addStyleName("puzzle-cell-ready");
@@ -1018,12 +1035,12 @@ public class ASW_Trab3 implements EntryPoint {
 			lastClickedCell = null;
 			puzzle 			= new Puzzle();
 			puzzle.setTable(tempPuzzle.getTable());
-			puzzle.setSolutions(tempPuzzle.getSolutions());
 			
 			wwwordz.shared.Table table = puzzle.getTable();
 			
-			for(int row = 0; row < MATRIX_SIZE; row++) {
-				for (int column = 0; column < MATRIX_SIZE; column++) {
+			setBoardSize(table.getSize());
+			for(int row = 0; row < table.getSize(); row++) {
+				for (int column = 0; column < table.getSize(); column++) {
 					((PuzzleCell) this.getWidget(row, column))
 					.setText("" 
 						   + table.getCell(row+1, column+1).getLetter());
@@ -1080,22 +1097,41 @@ public class ASW_Trab3 implements EntryPoint {
 		}
 		
 		/**
-		 * Checks if the formed word is a valid solution for
-		 * 		the Puzzle instance of the current round.
-		 * 
-		 * @return a boolean value, signaling if the selected word
-		 * 			is a valid solution
+		 * Checks with the server if the formed word is a valid
+		 * 		solution for the Puzzle instance of the current round,
+		 * 		through Manager's checkWord method, since the puzzle
+		 * 		sent to the client has no solutions.
+		 * The selected cells are flashed once the answer arrives.
 		 */
-		public boolean isWord() {
-			List<Solution> puzzleSolutions = puzzle.getSolutions();
-				for(Solution solution: puzzleSolutions) {
-					if (solution.getWord().equals(word.toString())) {
-						wordsFound.add(word.toString());
-						playerPoints += solution.getPoints();
-						return true;
+		public void checkWord() {
+			final String found = word.toString();
+			managerService.checkWord(playerName, found,
+									 new AsyncCallback<Integer>() {
+
+				@Override
+				public void onFailure(Throwable caught) {
+					informError("Remote Procedure Call - Failure",
+							SERVER_ERROR + "<br>Error message: " 
+										 + caught.getMessage());
+					paintCellsWrong();
+				}
+
+				@Override
+				public void onSuccess(Integer points) {
+					if (points == 0) {
+						informError("Illegal word",
+									"The formed word is not acceptable!");
+						paintCellsWrong();
+					} else {
+						if (! wordsFound.contains(found)) {
+							wordsFound.add(found);
+							playerPoints += points;
+						}
+						paintCellsCorrect();
+						updatePuzzleStats();
 					}
 				}
-			return false;
+			});
 		}
 		
 		/**
@@ -1216,13 +1252,8 @@ public class ASW_Trab3 implements EntryPoint {
 				informError("Illegal word",
 							"You've already found this word!");
 				puzzleGrid.paintCellsWrong();
-			} else if (! puzzleGrid.isWord()) {
-				informError("Illegal word",
-							"The formed word is not acceptable!");
-				puzzleGrid.paintCellsWrong();
 			} else {
-				puzzleGrid.paintCellsCorrect();
-				updatePuzzleStats();
+				puzzleGrid.checkWord();
 			}
 		}
 
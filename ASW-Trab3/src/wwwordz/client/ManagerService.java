@@ -26,7 +26,9 @@ public interface ManagerService extends RemoteService {
 
 	Puzzle getPuzzle() throws WWWordzException;
 
-	void setPoints(String nick, int points) throws WWWordzException;
+	int checkWord(String nick, String word) throws WWWordzException;
+
+	int submitWords(String nick, List<String> words) throws WWWordzException;
 
 	List<Rank> getRanking() throws WWWordzException;
 }
\ No newline at end of file
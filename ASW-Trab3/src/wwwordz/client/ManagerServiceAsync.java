@@ -26,7 +26,9 @@ public interface ManagerServiceAsync {
 
 	void getPuzzle(AsyncCallback<Puzzle> callback);
 
-	void setPoints(String nick, int points, AsyncCallback<Void> callback);
+	void checkWord(String nick, String word, AsyncCallback<Integer> callback);
+
+	void submitWords(String nick, List<String> words, AsyncCallback<Integer> callback);
 
 	void getRanking(AsyncCallback<List<Rank>> callback);
 }
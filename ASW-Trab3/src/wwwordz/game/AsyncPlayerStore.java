@@ -0,0 +1,490 @@
+package wwwordz.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A store that writes the changes of players to another store in
+ * 		a thread of its own, so that the threads that change players
+ * 		(the requests of the clients) never wait for the disk.<br><br>
+ * 
+ * Changes are put in a bounded queue, and the writer takes them in order,
+ * 		makes them in the other store, and flushes it when it made
+ * 		<i>syncEvery</i> changes, or <i>flushInterval</i> milliseconds
+ * 		after the first change not yet flushed, or when asked to
+ * 		(see flush()), completing the future of each change flushed.
+ * 		When the queue is full, changing a player waits for room in it,
+ * 		so that a disk slower than the changes holds back the requests
+ * 		instead of filling the heap, but at most <i>timeout</i>
+ * 		milliseconds: the change then fails, since it is made while
+ * 		holding the locks of Players, which must not be held for long.
+ * 		Only flushing and closing, made without them, wait
+ * 		for as long as needed.<br><br>
+ * 
+ * Compacting and moving the store are also put in the queue, after the
+ * 		changes made before them, so they are given the players as they
+ * 		were then: a copy, since the players change meanwhile.
+ * 		Closing the store writes all changes in the queue before closing
+ * 		the other store, and should be done when the server shuts down.
+ * 		Changes queued after the store is closed fail.<br><br>
+ * 
+ * The depth of the queue and the time taken to flush are kept
+ * 		as metrics (see depth() and latency()).
+ * 
+ * @see wwwordz.game.PlayerStore
+ */
+class AsyncPlayerStore implements PlayerStore {
+	private static final byte REGISTER = 1,
+							  POINTS   = 2,
+							  FLUSH    = 3,
+							  COMPACT  = 4,
+							  MOVE     = 5,
+							  CLOSE    = 6;
+	private final PlayerStore          store;
+	private final BlockingQueue<Change> queue;
+	private final int                  syncEvery;
+	private final long                 flushInterval;
+	private final long                 timeout;
+	private final Thread               writer;
+	private volatile boolean           compacting;
+	private volatile boolean           closed;
+	private volatile boolean           finished;
+	private volatile long              latency;
+
+	/**
+	 * Creates a store that writes to another one in a thread of its own,
+	 * 		started when the store is recovered.
+	 * 
+	 * @param store - the store the changes are written to
+	 * @param capacity - the number of changes the queue can hold
+	 * @param syncEvery - the number of changes flushed at once, at most
+	 * @param flushInterval - the longest a change waits to be flushed,
+	 * 		in milliseconds
+	 * @param timeout - the longest a change waits for room in the queue,
+	 * 		in milliseconds
+	 */
+	AsyncPlayerStore(PlayerStore store, int capacity, int syncEvery, long flushInterval,
+					 long timeout) {
+		this.store         = store;
+		this.queue         = new ArrayBlockingQueue<Change>(Math.max(capacity, 1));
+		this.syncEvery     = Math.max(syncEvery, 1);
+		this.flushInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(flushInterval, 0));
+		this.timeout       = TimeUnit.MILLISECONDS.toNanos(Math.max(timeout, 0));
+		this.writer        = new Thread(this::write, "Players");
+		this.writer.setDaemon(true);
+	}
+
+	/**
+	 * Recovers the other store and starts the writer.
+	 * 
+	 * @return the players recovered, indexed by nick
+	 * 
+	 * @throws IOException - if the files cannot be read or written
+	 */
+	public Map<String,Player> recover() throws IOException {
+		Map<String,Player> players = store.recover();
+		writer.start();
+		return players;
+	}
+
+	/**
+	 * Creates a player to be registered in the other store.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param password - the player's password
+	 * 
+	 * @return a new player
+	 * 
+	 * @throws IllegalArgumentException - if the nick is too long to be kept
+	 */
+	public Player newPlayer(String nick, String password) {
+		return store.newPlayer(nick, password);
+	}
+
+	/**
+	 * Loads a player from the other store. A player is loaded
+	 * 		only if it is not on the heap, so it has no changes
+	 * 		waiting in the queue.
+	 * 
+	 * @param nick - the player's nickname
+	 * 
+	 * @return the player, or null if there is no such player
+	 * 
+	 * @throws IOException - if the player cannot be read
+	 */
+	public Player load(String nick) throws IOException {
+		return store.load(nick);
+	}
+
+	/**
+	 * Queues the registration of a new player.
+	 * 
+	 * @param player - the new player
+	 * 
+	 * @return the future of the change, completed once it is flushed
+	 * 
+	 * @throws IOException - if the store is closed, or the queue
+	 * 		has no room for the change
+	 */
+	public CompletableFuture<Void> register(Player player) throws IOException {
+		return offer(new Change(REGISTER, player, 0));
+	}
+
+	/**
+	 * Queues the points set to a player.
+	 * 
+	 * @param player - the player, with its points already set
+	 * @param points - the points set, as in Player.setPoints()
+	 * 
+	 * @return the future of the change, completed once it is flushed
+	 * 
+	 * @throws IOException - if the store is closed, or the queue
+	 * 		has no room for the change
+	 */
+	public CompletableFuture<Void> points(Player player, int points) throws IOException {
+		return offer(new Change(POINTS, player, points));
+	}
+
+	/**
+	 * Flushes all changes queued so far, and waits for them.
+	 * 
+	 * @throws IOException - if the changes cannot be written
+	 */
+	public void flush() throws IOException {
+		await(put(new Change(FLUSH, null, 0)));
+	}
+
+	/**
+	 * Retrieves the number of changes waiting to be written.
+	 * 
+	 * @return the depth of the queue
+	 */
+	public int pending() {
+		return queue.size();
+	}
+
+	/**
+	 * Retrieves the number of changes that compact() would discard,
+	 * 		those already made in the other store
+	 * 		(0 while a compaction is queued).
+	 * 
+	 * @return the number of changes since the last compaction
+	 */
+	public int size() {
+		return compacting ? 0 : store.size();
+	}
+
+	/**
+	 * Queues the compaction of the other store, after the changes
+	 * 		queued so far, without waiting for it.
+	 * 
+	 * @param players - a copy of all the players, as they are now
+	 * 
+	 * @throws IOException - if the store is closed, or the queue
+	 * 		has no room for the compaction
+	 */
+	public void compact(Collection<Player> players) throws IOException {
+		Change change = new Change(COMPACT, null, 0);
+		change.players = players;
+		compacting     = true;
+		try {
+			offer(change);
+		} catch (IOException cause) {
+			compacting = false;
+			throw cause;
+		}
+	}
+
+	/**
+	 * Moves the other store to another directory, after writing
+	 * 		the changes queued so far, and waits for it.
+	 * 
+	 * @param target - the new directory of the files
+	 * @param players - a copy of all the players on the heap, as they are now
+	 * 
+	 * @throws IOException - if the files cannot be written or moved,
+	 * 		or the queue has no room for the move
+	 */
+	public void moveTo(File target, Collection<Player> players) throws IOException {
+		Change change = new Change(MOVE, null, 0);
+		change.players = players;
+		change.target  = target;
+		await(offer(change));
+	}
+
+	/**
+	 * Writes all changes queued and closes the other store,
+	 * 		waiting for the writer to finish. Changes made
+	 * 		afterwards fail.
+	 * 
+	 * @throws IOException - if the changes cannot be written
+	 * 		or the other store cannot be closed
+	 */
+	public void close() throws IOException {
+		if (!closed) {
+			CompletableFuture<Void> done = put(new Change(CLOSE, null, 0));
+			closed = true;
+			await(done);
+		}
+	}
+
+	/**
+	 * Retrieves the number of changes waiting to be written.
+	 * 
+	 * @return the depth of the queue
+	 */
+	int depth() {
+		return queue.size();
+	}
+
+	/**
+	 * Retrieves the time taken to flush the other store, on average
+	 * 		over the last flushes (an exponentially weighted moving
+	 * 		average, each flush weighing 1/8).
+	 * 
+	 * @return the write latency, in microseconds
+	 */
+	long latency() {
+		return TimeUnit.NANOSECONDS.toMicros(latency);
+	}
+
+	/**
+	 * Puts a change in the queue, waiting for room if it is full,
+	 * 		for as long as needed.
+	 * 
+	 * @param change - the change
+	 * 
+	 * @return the future of the change
+	 * 
+	 * @throws IOException - if the store is closed, or the thread is
+	 * 		interrupted while waiting
+	 */
+	private CompletableFuture<Void> put(Change change) throws IOException {
+		return put(change, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Puts a change made holding the locks of Players in the queue,
+	 * 		waiting for room if it is full, but at most <i>timeout</i>.
+	 * 
+	 * @param change - the change
+	 * 
+	 * @return the future of the change
+	 * 
+	 * @throws IOException - if the store is closed, the queue has no room
+	 * 		for the change in time, or the thread is interrupted while waiting
+	 */
+	private CompletableFuture<Void> offer(Change change) throws IOException {
+		return put(change, timeout);
+	}
+
+	/**
+	 * Puts a change in the queue, waiting for room if it is full.
+	 * 		A change put while the store is closed, after the check,
+	 * 		fails once the writer is finished: either the writer
+	 * 		discards it on finishing, or the caller does, if it finds
+	 * 		the writer finished after putting it.
+	 * 
+	 * @param change - the change
+	 * @param wait - the longest to wait for room, in nanoseconds
+	 * 
+	 * @return the future of the change
+	 * 
+	 * @throws IOException - if the store is closed, the queue has no room
+	 * 		for the change in time, or the thread is interrupted while waiting
+	 */
+	private CompletableFuture<Void> put(Change change, long wait) throws IOException {
+		if (closed) {
+			throw new IOException("Players store closed");
+		}
+		try {
+			if (!queue.offer(change, wait, TimeUnit.NANOSECONDS)) {
+				throw new IOException("Players store busy: no room for a change");
+			}
+		} catch (InterruptedException cause) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while queueing a change", cause);
+		}
+		if (finished) {
+			discard();
+		}
+		return change.done;
+	}
+
+	/**
+	 * Fails the changes left in the queue after the writer is finished.
+	 * 
+	 */
+	private void discard() {
+		IOException cause = new IOException("Players store closed");
+		for(Change change = queue.poll(); change != null; change = queue.poll()) {
+			change.done.completeExceptionally(cause);
+		}
+	}
+
+	/**
+	 * Waits for a change that is not a change of a player,
+	 * 		whose future does not ask for a flush.
+	 * 
+	 * @param done - the future of the change
+	 * 
+	 * @throws IOException - if the change failed
+	 */
+	private void await(CompletableFuture<Void> done) throws IOException {
+		try {
+			done.get();
+		} catch (InterruptedException cause) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a change", cause);
+		} catch (ExecutionException cause) {
+			throw cause.getCause() instanceof IOException ? (IOException) cause.getCause()
+														  : new IOException(cause.getCause());
+		}
+	}
+
+	/**
+	 * The loop of the writer: takes the changes in order and makes them,
+	 * 		flushing them when there are <i>syncEvery</i> of them,
+	 * 		or <i>flushInterval</i> after the first of them,
+	 * 		or a change other than of a player asks for it,
+	 * 		until the store is closed.
+	 */
+	private void write() {
+		List<Change> changes  = new ArrayList<Change>();
+		long         deadline = 0;
+
+		while (true) {
+			Change change;
+			try {
+				if (changes.isEmpty()) {
+					change   = queue.take();
+					deadline = System.nanoTime() + flushInterval;
+				} else {
+					change = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				}
+			} catch (InterruptedException cause) {
+				continue;
+			}
+
+			if (change == null) {
+				flush(changes);
+			} else if (change.type == REGISTER || change.type == POINTS) {
+				if (make(change)) {
+					changes.add(change);
+				}
+				if (changes.size() >= syncEvery) {
+					flush(changes);
+				}
+			} else {
+				changes.add(change);
+				flush(changes);
+				if (change.type == CLOSE) {
+					finished = true;
+					discard();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes a change of a player in the other store, failing its future
+	 * 		if it cannot be made.
+	 * 
+	 * @param change - a registration or points set
+	 * 
+	 * @return a boolean value, true if the change was made
+	 */
+	private boolean make(Change change) {
+		try {
+			if (change.type == REGISTER) {
+				store.register(change.player);
+			} else {
+				store.points(change.player, change.points);
+			}
+			return true;
+		} catch (IOException | RuntimeException cause) {
+			cause.printStackTrace();
+			change.done.completeExceptionally(cause);
+			return false;
+		}
+	}
+
+	/**
+	 * Flushes the other store, doing first what the last change asks for,
+	 * 		if it is not a change of a player, and completes
+	 * 		the futures of all changes.
+	 * 
+	 * @param changes - the changes made since the last flush
+	 */
+	private void flush(List<Change> changes) {
+		Change last  = changes.get(changes.size() - 1);
+		long   start = System.nanoTime();
+		try {
+			switch (last.type) {
+			case COMPACT:
+				store.compact(last.players);
+				break;
+			case MOVE:
+				store.moveTo(last.target, last.players);
+				break;
+			case CLOSE:
+				store.close();
+				break;
+			default:
+				store.flush();
+			}
+			latency += (System.nanoTime() - start - latency) / 8;
+			for(Change change: changes) {
+				change.done.complete(null);
+			}
+		} catch (IOException | RuntimeException cause) {
+			cause.printStackTrace();
+			for(Change change: changes) {
+				change.done.completeExceptionally(cause);
+			}
+		}
+		if (last.type == COMPACT) {
+			compacting = false;
+		}
+		changes.clear();
+	}
+
+	/**
+	 * A change in the queue: of a player (a registration or points set),
+	 * 		or to the store (a flush, compaction, move or close).
+	 */
+	private class Change {
+		final byte                    type;
+		final Player                  player;
+		final int                     points;
+		final CompletableFuture<Void> done;
+		Collection<Player>            players;
+		File                          target;
+
+		/**
+		 * Creates a change. The future of a change of a player flushes
+		 * 		the queue when waited on, like the future of a batch.
+		 * 
+		 * @param type - the type of change
+		 * @param player - the player changed, if any
+		 * @param points - the points set, if any
+		 */
+		Change(byte type, Player player, int points) {
+			this.type   = type;
+			this.player = player;
+			this.points = points;
+			this.done   = player != null ? new Batch(AsyncPlayerStore.this)
+										 : new CompletableFuture<Void>();
+		}
+	}
+}
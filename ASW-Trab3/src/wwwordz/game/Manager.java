@@ -102,22 +102,48 @@ public class Manager implements ManagerService {
 	}
 	
 	/**
-	 * Attempts to set a player's points for the current round
+	 * Checks a word found by a player in the current round's puzzle
 	 * 
 	 * @param nick - the player's nickname
-	 * @param points - the number of points to assign to the player
+	 * @param word - the word found by the player
+	 * 
+	 * @return the points the word is worth, or 0 if it is not a solution
 	 * 
 	 * @throws WWWordzException - if player is not on the current round,
-	 * 						or if the method is not called on stage REPORT
+	 * 						or if the method is not called on stage PLAY
 	 */
-	public void setPoints(String nick, int points) throws WWWordzException {
+	public int checkWord(String nick, String word) throws WWWordzException {
+		int points;
 		try {
-			round.setPoints(nick,  points);
+			points = round.checkWord(nick, word);
+			return points;
 		} catch (WWWordzException exception) {
 			throw exception;
 		}
 	}
 	
+	/**
+	 * Attempts to score the words found by a player in the current round,
+	 * 		setting the player's points for it
+	 * 
+	 * @param nick - the player's nickname
+	 * @param words - the words found by the player
+	 * 
+	 * @return the points assigned to the player
+	 * 
+	 * @throws WWWordzException - if player is not on the current round,
+	 * 						or if the method is not called on stage REPORT
+	 */
+	public int submitWords(String nick, List<String> words) throws WWWordzException {
+		int points;
+		try {
+			points = round.submitWords(nick, words);
+			return points;
+		} catch (WWWordzException exception) {
+			throw exception;
+		}
+	}
+
 	/**
 	 * Attempts to retrieve a list of type Rank,
 	 * 	which is sorted by the amount of points of each player 
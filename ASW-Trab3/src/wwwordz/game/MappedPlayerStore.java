@@ -0,0 +1,547 @@
+package wwwordz.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A store of players in memory-mapped files, with no players on the heap
+ * 		until they are loaded, so that opening it takes the same
+ * 		time however many players there are.<br><br>
+ * 
+ * The players are fixed-size records in the file <i>players.records</i>,
+ * 		in the order they registered: the nick, in UTF-8, a random salt,
+ * 		the hash of the password, the points, the accumulated points and
+ * 		the hash code of the nick. A record never moves, so the points
+ * 		of a player are written in place, where its record is, without
+ * 		writing anything else.<br><br>
+ * 
+ * The password is hashed by Player, with the salt of its record and
+ * 		the number of iterations in the header of the file (by default,
+ * 		Player.ITERATIONS), so that the passwords cannot be guessed
+ * 		quickly from a copy of the file.<br><br>
+ * 
+ * The file <i>players.index</i> is an open-addressing hash table
+ * 		(with linear probing) from nicks to records, also mapped,
+ * 		so that a player is found by reading a few slots and one
+ * 		record, and never more than half its slots are used.
+ * 		Each slot has the hash code of a nick and the number of its
+ * 		record (plus 1, 0 being an empty slot). The index is rebuilt
+ * 		from the records, twice as large, when it is half full,
+ * 		and also when opened, if it does not have as many players
+ * 		as the records (i.e. the last registration was cut short).<br><br>
+ * 
+ * Flushing forces both files to disk (msync), so a batch is as large
+ * 		as the changes made between flushes. Each file is at most 2GB
+ * 		(a MappedByteBuffer), so at most 16M players are kept.
+ * 
+ * @see wwwordz.game.PlayerStore
+ */
+class MappedPlayerStore implements PlayerStore {
+	private static final int    MAGIC       = 0x5757504D,
+								HEADER      = 64,
+								COUNT       = 8,
+								ITERATIONS  = 12,
+								RECORD      = 128,
+								MAX_NICK    = 64,
+								SALT_LENGTH = Player.SALT_LENGTH,
+								HASH_LENGTH = Player.HASH_LENGTH,
+								NICK        = 2,
+								SALT        = NICK + MAX_NICK,
+								HASH        = SALT + SALT_LENGTH,
+								POINTS      = HASH + HASH_LENGTH,
+								ACCUMULATED = POINTS + 4,
+								HASH_CODE   = ACCUMULATED + 4,
+								SLOT        = 8,
+								INITIAL     = 1024;
+	private static final String RECORDS     = "players.records",
+								INDEX       = "players.index";
+	private final Object        io    = new Object();
+	private CompletableFuture<Void> batch = new Batch(this);
+	private volatile int        batched;
+	private File                directory;
+	private FileChannel         recordsChannel,
+								indexChannel;
+	private volatile MappedByteBuffer records;
+	private MappedByteBuffer    index;
+	private int                 count;
+	private int                 capacity;
+	private int                 slots;
+	private int                 iterations;
+
+	/**
+	 * Creates the store of the players kept in a directory.
+	 * 		It must be recovered before players are registered.
+	 * 
+	 * @param directory - the directory of the records and index files
+	 */
+	MappedPlayerStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Maps the records and the index, creating them if they do not exist,
+	 * 		and rebuilding the index if it does not match the records.
+	 * 
+	 * @return an empty map: players are loaded when asked for
+	 * 
+	 * @throws IOException - if the files cannot be read or written
+	 */
+	public synchronized Map<String,Player> recover() throws IOException {
+		open();
+		return new HashMap<String,Player>();
+	}
+
+	/**
+	 * Creates a player to be registered in this store, with a new salt
+	 * 		and the hash of its password.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param password - the player's password
+	 * 
+	 * @return a new player
+	 * 
+	 * @throws IllegalArgumentException - if the nick is too long for a record
+	 */
+	public Player newPlayer(String nick, String password) {
+		if (nick.getBytes(StandardCharsets.UTF_8).length > MAX_NICK) {
+			throw new IllegalArgumentException("Nickname too long");
+		}
+		return new MappedPlayer(nick, password, iterations);
+	}
+
+	/**
+	 * Loads a player from its record. The password of the player
+	 * 		is not known, only its salt and hash (see Player.checkPassword()).
+	 * 
+	 * @param nick - the player's nickname
+	 * 
+	 * @return the player, or null if there is no such player
+	 */
+	public synchronized Player load(String nick) {
+		byte[] bytes  = nick.getBytes(StandardCharsets.UTF_8);
+		int    record = find(bytes, hash(nick));
+
+		if (record < 0) {
+			return null;
+		}
+		int          at     = HEADER + record * RECORD;
+		byte[]       salt   = new byte[SALT_LENGTH],
+					 hash   = new byte[HASH_LENGTH];
+		ByteBuffer   view   = records.duplicate();
+		view.position(at + SALT);
+		view.get(salt);
+		view.get(hash);
+
+		MappedPlayer player = new MappedPlayer(nick, salt, hash, iterations);
+		player.record = record;
+		player.setPoints(records.getInt(at + POINTS));
+		player.setAccumulated(records.getInt(at + ACCUMULATED));
+		return player;
+	}
+
+	/**
+	 * Writes the record of a new player, and adds it to the index.
+	 * 
+	 * @param player - the new player, created by newPlayer()
+	 * 
+	 * @return the future of the current batch
+	 * 
+	 * @throws IOException - if the nick is too long for a record,
+	 * 		if the player is already kept,
+	 * 		or the files cannot be extended
+	 */
+	public synchronized CompletableFuture<Void> register(Player player)
+	throws IOException {
+		MappedPlayer mapped = (MappedPlayer) player;
+		byte[]       bytes  = player.getNick().getBytes(StandardCharsets.UTF_8);
+		int          hash   = hash(player.getNick());
+
+		if (bytes.length > MAX_NICK) {
+			throw new IOException("Nick too long to be kept: " + player.getNick());
+		}
+		int found = find(bytes, hash);
+		if (found >= 0) {
+			throw new IOException("Player already kept: " + player.getNick());
+		}
+		if (count == capacity) {
+			mapRecords(capacity * 2);
+		}
+		if ((count + 1) * 2 > slots) {
+			rebuild(slots * 2);
+			found = find(bytes, hash);
+		}
+
+		int        record = count,
+				   at     = HEADER + record * RECORD;
+		ByteBuffer view   = records.duplicate();
+		view.position(at + NICK);
+		view.put(bytes);
+		view.position(at + SALT);
+		view.put(player.salt);
+		view.put(player.hash);
+		records.putInt(at + POINTS, player.getPoints());
+		records.putInt(at + ACCUMULATED, player.getAccumulated());
+		records.putInt(at + HASH_CODE, hash);
+		records.putShort(at, (short) bytes.length);
+		records.putInt(COUNT, ++count);
+
+		index.putLong(HEADER + (-found - 1) * SLOT, entry(hash, record));
+		index.putInt(COUNT, count);
+		mapped.record = record;
+		return batched();
+	}
+
+	/**
+	 * Writes the points of a player in place, in its record.
+	 * 
+	 * @param player - the player, with its points already set
+	 * @param points - the points set, as in Player.setPoints()
+	 * 
+	 * @return the future of the current batch
+	 */
+	public CompletableFuture<Void> points(Player player, int points) {
+		int record = ((MappedPlayer) player).record;
+
+		if (record >= 0) {
+			MappedByteBuffer buffer = records;
+			int              at     = HEADER + record * RECORD;
+			buffer.putInt(at + POINTS, player.getPoints());
+			buffer.putInt(at + ACCUMULATED, player.getAccumulated());
+		}
+		return batched();
+	}
+
+	/**
+	 * Counts a change in the current batch.
+	 * 
+	 * @return the future of the current batch
+	 */
+	private synchronized CompletableFuture<Void> batched() {
+		batched++;
+		return batch;
+	}
+
+	/**
+	 * Forces the records and the index to disk, completing the future
+	 * 		of the changes made so far. Changes made meanwhile go
+	 * 		to the next batch.
+	 * 
+	 */
+	public void flush() {
+		synchronized (io) {
+			CompletableFuture<Void> done;
+			MappedByteBuffer        records,
+									index;
+
+			synchronized (this) {
+				if (batched == 0) {
+					return;
+				}
+				done    = batch;
+				batch   = new Batch(this);
+				batched = 0;
+				records = this.records;
+				index   = this.index;
+			}
+			try {
+				records.force();
+				index.force();
+				done.complete(null);
+			} catch (RuntimeException cause) {
+				done.completeExceptionally(cause);
+				throw cause;
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the number of changes in the current batch.
+	 * 
+	 * @return the number of changes since the last flush
+	 */
+	public int pending() {
+		return batched;
+	}
+
+	/**
+	 * Retrieves the number of changes that compact() would discard:
+	 * 		none, since changes are made in place.
+	 * 
+	 * @return 0
+	 */
+	public int size() {
+		return 0;
+	}
+
+	/**
+	 * Replaces all players by the given ones, created by newPlayer()
+	 * 		or load(). The files keep their size.
+	 * 
+	 * @param players - all the players
+	 * 
+	 * @throws IOException - if the players cannot be written
+	 */
+	public void compact(Collection<Player> players) throws IOException {
+		synchronized (io) {
+			synchronized (this) {
+				count = 0;
+				records.putInt(COUNT, count);
+				rebuild(INITIAL);
+				for(Player player: players) {
+					register(player);
+				}
+			}
+			flush();
+		}
+	}
+
+	/**
+	 * Moves the records and the index to another directory.
+	 * 		Players already loaded keep their records.
+	 * 
+	 * @param target - the new directory of the files
+	 * @param players - all the players on the heap (not needed)
+	 * 
+	 * @throws IOException - if the files cannot be moved
+	 */
+	public void moveTo(File target, Collection<Player> players) throws IOException {
+		synchronized (io) {
+			close();
+			synchronized (this) {
+				for(String name: new String[] { RECORDS, INDEX }) {
+					Files.move(new File(directory, name).toPath(),
+							   new File(target, name).toPath(),
+							   StandardCopyOption.REPLACE_EXISTING);
+				}
+				directory = target;
+				open();
+			}
+		}
+	}
+
+	/**
+	 * Forces the records and the index to disk and closes their files.
+	 * 		Their mappings remain valid until collected.
+	 * 
+	 * @throws IOException - if the files cannot be closed
+	 */
+	public void close() throws IOException {
+		synchronized (io) {
+			flush();
+			recordsChannel.close();
+			indexChannel.close();
+		}
+	}
+
+	/**
+	 * Opens and maps the records and the index, creating them
+	 * 		if they do not exist.
+	 * 
+	 * @throws IOException - if the files cannot be opened, or are not
+	 * 		records of players
+	 */
+	private void open() throws IOException {
+		recordsChannel = channel(RECORDS);
+		indexChannel   = channel(INDEX);
+
+		if (recordsChannel.size() < HEADER) {
+			mapRecords(INITIAL);
+			records.putInt(0, MAGIC);
+			records.putInt(4, RECORD);
+			records.putInt(COUNT, 0);
+			records.putInt(ITERATIONS, Player.ITERATIONS);
+		} else {
+			mapRecords((int) ((recordsChannel.size() - HEADER) / RECORD));
+			if (records.getInt(0) != MAGIC || records.getInt(4) != RECORD
+					|| records.getInt(ITERATIONS) <= 0) {
+				throw new IOException("Not a players file: " + new File(directory, RECORDS));
+			}
+		}
+		count      = records.getInt(COUNT);
+		iterations = records.getInt(ITERATIONS);
+
+		if (indexChannel.size() >= HEADER) {
+			index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+			slots = index.getInt(4);
+		}
+		if (indexChannel.size() < HEADER || index.getInt(0) != MAGIC
+				|| index.getInt(COUNT) != count
+				|| indexChannel.size() != HEADER + (long) slots * SLOT) {
+			rebuild(Math.max(INITIAL, Integer.highestOneBit(Math.max(count, 1) * 4)));
+		}
+	}
+
+	/**
+	 * Opens a file of this store, creating it if it does not exist.
+	 * 
+	 * @param name - the name of the file
+	 * 
+	 * @return a channel to read and write the file
+	 * 
+	 * @throws IOException - if the file cannot be opened
+	 */
+	private FileChannel channel(String name) throws IOException {
+		return FileChannel.open(new File(directory, name).toPath(),
+								StandardOpenOption.CREATE,
+								StandardOpenOption.READ,
+								StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Maps the records file with room for a number of records,
+	 * 		extending the file if needed. Records written
+	 * 		through the previous mapping are in the same file.
+	 * 
+	 * @param capacity - the number of records
+	 * 
+	 * @throws IOException - if the file cannot be mapped or is too large
+	 */
+	private void mapRecords(int capacity) throws IOException {
+		if (HEADER + (long) capacity * RECORD > Integer.MAX_VALUE) {
+			throw new IOException("Too many players to be kept");
+		}
+		records       = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+										   HEADER + (long) capacity * RECORD);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Creates the index anew, with a number of slots, from the records.
+	 * 
+	 * @param slots - the number of slots, a power of 2
+	 * 
+	 * @throws IOException - if the file cannot be mapped or is too large
+	 */
+	private void rebuild(int slots) throws IOException {
+		if (HEADER + (long) slots * SLOT > Integer.MAX_VALUE) {
+			throw new IOException("Too many players to be kept");
+		}
+		indexChannel.truncate(0);
+		index      = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+									  HEADER + (long) slots * SLOT);
+		this.slots = slots;
+		for(int record = 0; record < count; record++) {
+			int hash = records.getInt(HEADER + record * RECORD + HASH_CODE),
+				slot = hash & slots - 1;
+			while (index.getLong(HEADER + slot * SLOT) != 0) {
+				slot = slot + 1 & slots - 1;
+			}
+			index.putLong(HEADER + slot * SLOT, entry(hash, record));
+		}
+		index.putInt(0, MAGIC);
+		index.putInt(4, slots);
+		index.putInt(COUNT, count);
+	}
+
+	/**
+	 * Finds the record of a nick in the index.
+	 * 
+	 * @param nick - the nick, in UTF-8
+	 * @param hash - the hash code of the nick
+	 * 
+	 * @return the number of the record of the nick, or, if there is
+	 * 		none, -(<i>slot</i> + 1), where <i>slot</i> is the empty slot
+	 * 		where it would be
+	 */
+	private int find(byte[] nick, int hash) {
+		for(int slot = hash & slots - 1; ; slot = slot + 1 & slots - 1) {
+			long entry = index.getLong(HEADER + slot * SLOT);
+			if (entry == 0) {
+				return -slot - 1;
+			}
+			int record = (int) entry - 1;
+			if ((int) (entry >>> 32) == hash && matches(record, nick)) {
+				return record;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a record has a nick.
+	 * 
+	 * @param record - the number of the record
+	 * @param nick - the nick, in UTF-8
+	 * 
+	 * @return a boolean value, true if the record is that nick's
+	 */
+	private boolean matches(int record, byte[] nick) {
+		int at = HEADER + record * RECORD;
+		if (records.getShort(at) != nick.length) {
+			return false;
+		}
+		for(int k = 0; k < nick.length; k++) {
+			if (records.get(at + NICK + k) != nick[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a slot of the index.
+	 * 
+	 * @param hash - the hash code of the nick
+	 * @param record - the number of the nick's record
+	 * 
+	 * @return the contents of the slot
+	 */
+	private static long entry(int hash, int record) {
+		return (long) hash << 32 | record + 1;
+	}
+
+	/**
+	 * Computes the hash code of a nick, spreading the bits of
+	 * 		String.hashCode() so that its lowest bits can be used
+	 * 		as a slot of the index.
+	 * 
+	 * @param nick - the player's nickname
+	 * 
+	 * @return the hash code of the nick
+	 */
+	private static int hash(String nick) {
+		int hash = nick.hashCode() * 0x9E3779B9;
+		return hash ^ hash >>> 16;
+	}
+
+	/**
+	 * A player kept in a record, which knows the number of its record.
+	 */
+	static class MappedPlayer extends Player {
+		private static final long serialVersionUID = 1L;
+		int record = -1;
+
+		/**
+		 * Creates a new player, to be kept in a record.
+		 * 
+		 * @param nick - the player's nickname
+		 * @param password - the player's password
+		 * @param iterations - the number of iterations of the hash
+		 */
+		MappedPlayer(String nick, String password, int iterations) {
+			super(nick, password, iterations);
+		}
+
+		/**
+		 * Creates a player kept in a record, whose password is not known.
+		 * 
+		 * @param nick - the player's nickname
+		 * @param salt - the salt of the password
+		 * @param hash - the hash of the password, see Player.derive()
+		 * @param iterations - the number of iterations of the hash
+		 */
+		MappedPlayer(String nick, byte[] salt, byte[] hash, int iterations) {
+			super(nick, salt, hash, iterations);
+		}
+	}
+}
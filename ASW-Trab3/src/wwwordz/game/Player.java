@@ -1,30 +1,84 @@
 package wwwordz.game;
 
 import java.io.Serializable;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 /**
  * "A player of WWWordz, including authentication data (name and password), 
  * current round and accumulated points."
  * 
+ * The points are atomic counters, since a player may be scored
+ * 		by several threads at once: no points added are ever lost.
+ * 
+ * The password itself is not kept, only a random salt and the hash
+ * 		of the password with PBKDF2 (HMAC-SHA256), which is what
+ * 		the stores of Players write, so that the passwords cannot be
+ * 		guessed quickly from a copy of their files. The password is
+ * 		known, on the heap only, once it is set or first given right,
+ * 		so that it is hashed again only on the first login.
+ * 
  * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/game/Player.html
  *
  */
 public class Player implements Serializable {
 	private static final long serialVersionUID = 1L;
+	static final int    SALT_LENGTH = 16,
+						HASH_LENGTH = 32,
+						ITERATIONS  = 100000;
+	private static final SecureRandom salts = new SecureRandom();
 	String nick;
-	String password;
-	int points;
-	int accumulated;
+	transient String password;
+	byte[] salt;
+	byte[] hash;
+	int    iterations;
+	AtomicInteger points      = new AtomicInteger();
+	AtomicInteger accumulated = new AtomicInteger();
 	
 	/**
-	 * Creates an instance of Player with the given nickname and password.
+	 * Creates an instance of Player with the given nickname and password,
+	 * 		hashed with a new salt and ITERATIONS iterations.
 	 * 
 	 * @param nick - the player's nickname
 	 * @param password - the player's password
 	 */
 	public Player(String nick, String password) {
-		this.nick = nick;
-		this.password = password;
+		this(nick, password, ITERATIONS);
+	}
+
+	/**
+	 * Creates an instance of Player with the given nickname and password,
+	 * 		hashed with a new salt and the given number of iterations.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param password - the player's password
+	 * @param iterations - the number of iterations of the hash
+	 */
+	Player(String nick, String password, int iterations) {
+		this.nick       = nick;
+		this.iterations = iterations;
+		setPassword(password);
+	}
+
+	/**
+	 * Creates an instance of Player whose password is not known,
+	 * 		only its salt and hash, as kept by a store.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param salt - the salt of the password
+	 * @param hash - the hash of the password, see derive()
+	 * @param iterations - the number of iterations of the hash
+	 */
+	Player(String nick, byte[] salt, byte[] hash, int iterations) {
+		this.nick       = nick;
+		this.salt       = salt;
+		this.hash       = hash;
+		this.iterations = iterations;
 	}
 
 	/**
@@ -46,30 +100,57 @@ public class Player implements Serializable {
 	}
 
 	/**
-	 * Retrieves the player's password.
+	 * Retrieves the player's password, if it is known.
 	 * 
-	 * @return the player's password as a String
+	 * @return the player's password as a String,
+	 * 		or null if it was not set nor given right yet
 	 */
 	public String getPassword() {
 		return password;
 	}
 
 	/**
-	 * Changes the player's password to the given String.
+	 * Changes the player's password to the given String,
+	 * 		hashing it with a new salt.
 	 * 
 	 * @param password - the player's new password
 	 */
 	public void setPassword(String password) {
+		byte[] salt = new byte[SALT_LENGTH];
+		salts.nextBytes(salt);
+		this.hash     = derive(password, salt, iterations);
+		this.salt     = salt;
 		this.password = password;
 	}
 
+	/**
+	 * Checks if the given password is this player's: against its
+	 * 		password, if it is known, or else against its hash,
+	 * 		keeping it if it is right.
+	 * 
+	 * @param password - the password given
+	 * 
+	 * @return a boolean value, true if it is this player's password
+	 */
+	boolean checkPassword(String password) {
+		String known = this.password;
+		if (known != null) {
+			return known.equals(password);
+		}
+		boolean right = MessageDigest.isEqual(hash, derive(password, salt, iterations));
+		if (right) {
+			this.password = password;
+		}
+		return right;
+	}
+
 	/**
 	 * Retrieves the player's current points.
 	 * 
 	 * @return the player's current points
 	 */
 	public int getPoints() {
-		return points;
+		return points.get();
 	}
 
 	/**
@@ -79,8 +160,19 @@ public class Player implements Serializable {
 	 * @param points - the number of points to add
 	 */
 	public void setPoints(int points) {
-		this.points = points;
-		this.accumulated += points;
+		this.points.set(points);
+		this.accumulated.addAndGet(points);
+	}
+
+	/**
+	 * Undoes the last setPoints(), when the points set cannot be kept.
+	 * 
+	 * @param previous - the player's points before they were set
+	 * @param points - the number of points that were added
+	 */
+	void unsetPoints(int previous, int points) {
+		this.points.set(previous);
+		this.accumulated.addAndGet(-points);
 	}
 
 	/**
@@ -90,7 +182,7 @@ public class Player implements Serializable {
 	 * @return the player's accumulated points
 	 */
 	public int getAccumulated() {
-		return accumulated;
+		return accumulated.get();
 	}
 
 	/**
@@ -100,6 +192,30 @@ public class Player implements Serializable {
 	 * @param accumulated - the new number of accumulated points
 	 */
 	public void setAccumulated(int accumulated) {
-		this.accumulated = accumulated;
+		this.accumulated.set(accumulated);
+	}
+
+	/**
+	 * Computes the hash of a password with PBKDF2 (HMAC-SHA256),
+	 * 		so that equal passwords with different salts
+	 * 		have different hashes, each slow to compute.
+	 * 
+	 * @param password - the player's password
+	 * @param salt - the salt of the password
+	 * @param iterations - the number of iterations of PBKDF2
+	 * 
+	 * @return the HASH_LENGTH bytes of the hash
+	 */
+	static byte[] derive(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt,
+										 iterations, 8 * HASH_LENGTH);
+		try {
+			return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+								   .generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException cause) {
+			throw new IllegalStateException(cause);
+		} finally {
+			spec.clearPassword();
+		}
 	}
 }
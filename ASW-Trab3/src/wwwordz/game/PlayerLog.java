@@ -0,0 +1,566 @@
+package wwwordz.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * The persistence of Players: an append-only log of the changes
+ * 		to the players, and a snapshot of all players, from which
+ * 		the players are recovered on startup.<br><br>
+ * 
+ * Each change is a small binary record appended to the log: a player
+ * 		registered (nick, and the iterations, salt and hash of its
+ * 		password, never the password itself) or a player's points set
+ * 		(nick and points, as in Player.setPoints()). A record is its
+ * 		length, its contents and their CRC32, so a record cut short
+ * 		by a crash is detected, and dropped, when the log is read.<br><br>
+ * 
+ * Records are committed in groups: appending a record only adds it to
+ * 		the current batch, in memory, and flush() writes the whole batch
+ * 		to the file in one write and forces it to disk with one fsync.
+ * 		Each record appended returns the future of its batch, completed
+ * 		once the batch is on disk. While a batch is written, records
+ * 		are appended to the next one, so that appending never waits
+ * 		for the disk.<br><br>
+ * 
+ * Compacting writes all players to a new snapshot and starts a new log.
+ * 		Logs and snapshots are numbered by generation: a snapshot of
+ * 		generation <i>g</i> has all changes of the logs before <i>g</i>,
+ * 		so recovering reads the latest snapshot and replays the logs
+ * 		from its generation on. The snapshot is written to a temporary
+ * 		file and renamed, and old logs are deleted only after, so that
+ * 		a crash while compacting loses nothing.<br><br>
+ * 
+ * All players are recovered onto the heap, so load() finds none.
+ * 		Files of an older format, which kept the passwords, are still
+ * 		read, and compacted at once, so that the passwords are hashed
+ * 		and the files that kept them deleted.
+ * 
+ * @see wwwordz.game.PlayerStore
+ */
+class PlayerLog implements PlayerStore {
+	static final byte PASSWORD = 1,
+					  POINTS   = 2,
+					  REGISTER = 3;
+	private static final int    MAGIC      = 0x57575048,
+								PLAIN      = 0x57575053,
+								MAX_RECORD = 1 + 2 * (2 + 0xFFFF) + 4,
+								MAX_TEXT   = 0xFFFF / 3;
+	private static final String LOG        = "players.log.",
+								SNAPSHOT   = "players.snapshot";
+	private final Object        io    = new Object();
+	private final CRC32         crc   = new CRC32();
+	private final Record        bytes = new Record();
+	private final DataOutputStream data = new DataOutputStream(bytes);
+	private ByteBuffer  pending = ByteBuffer.allocate(4096),
+						spare   = ByteBuffer.allocate(4096);
+	private CompletableFuture<Void> batch = new Batch(this);
+	private volatile int batched;
+	private File        directory;
+	private long        generation;
+	private FileChannel channel;
+	private volatile int records;
+	private boolean     plain;
+
+	/**
+	 * Creates the log of the players kept in a directory.
+	 * 		It must be recovered before changes are appended.
+	 * 
+	 * @param directory - the directory of the log and snapshot files
+	 */
+	PlayerLog(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Reads the latest snapshot and replays the logs after it,
+	 * 		and opens the current log to append changes.
+	 * 		Records cut short at the end of the current log are dropped.
+	 * 
+	 * @return the players, indexed by nick
+	 * 
+	 * @throws IOException - if the files cannot be read or written
+	 */
+	public Map<String,Player> recover() throws IOException {
+		Map<String,Player> players = new HashMap<String,Player>();
+		File snapshot = new File(directory, SNAPSHOT);
+
+		generation = 0;
+		plain      = false;
+		if (snapshot.canRead()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+											new FileInputStream(snapshot)))) {
+				int magic = in.readInt();
+				if (magic != MAGIC && magic != PLAIN) {
+					throw new IOException("Not a players snapshot: " + snapshot);
+				}
+				plain      = magic == PLAIN;
+				generation = in.readLong();
+				for(int count = in.readInt(); count > 0; count--) {
+					String nick   = in.readUTF();
+					Player player = plain ? new Player(nick, in.readUTF())
+										  : readPlayer(nick, in);
+					player.setPoints(in.readInt());
+					player.setAccumulated(in.readInt());
+					players.put(player.nick, player);
+				}
+			}
+		}
+
+		long last = generation;
+		for(long log = generation; logFile(log).exists(); log++) {
+			last = log;
+		}
+		for(long log = generation - 1; logFile(log).delete(); log--) {
+			// deleted a log already in the snapshot
+		}
+		for(long log = generation; log <= last; log++) {
+			long valid = replay(logFile(log), players);
+			if (log == last) {
+				int replayed = records;
+				open(log);
+				channel.truncate(valid);
+				channel.position(valid);
+				records = replayed;
+			}
+		}
+		if (plain) {
+			compact(players.values());
+		}
+		return players;
+	}
+
+	/**
+	 * Applies the records of a log to the players.
+	 * 
+	 * @param file - the log file, which may not exist
+	 * @param players - the players, indexed by nick
+	 * 
+	 * @return the length of the valid records at the start of the file
+	 * 		(their number is kept in <i>records</i>)
+	 * 
+	 * @throws IOException - if the file cannot be read
+	 */
+	private long replay(File file, Map<String,Player> players) throws IOException {
+		long valid = 0;
+		records    = 0;
+		if (!file.exists()) {
+			return valid;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+										new FileInputStream(file)))) {
+			while (true) {
+				int length = in.readInt();
+				if (length < 1 || length > MAX_RECORD) {
+					break;
+				}
+				byte[] body = new byte[length];
+				in.readFully(body);
+				int check = in.readInt();
+
+				crc.reset();
+				crc.update(body, 0, length);
+				if ((int) crc.getValue() != check) {
+					break;
+				}
+				apply(new DataInputStream(new ByteArrayInputStream(body)), players);
+				valid += 4 + length + 4;
+				records++;
+			}
+		} catch (EOFException cut) {
+			// the last record was cut short
+		}
+		return valid;
+	}
+
+	/**
+	 * Applies a record to the players.
+	 * 
+	 * @param record - the contents of the record
+	 * @param players - the players, indexed by nick
+	 * 
+	 * @throws IOException - if the record cannot be read
+	 */
+	private void apply(DataInputStream record, Map<String,Player> players)
+	throws IOException {
+		byte   type = record.readByte();
+		String nick = record.readUTF();
+
+		if (type == REGISTER) {
+			players.put(nick, readPlayer(nick, record));
+		} else if (type == PASSWORD) {
+			players.put(nick, new Player(nick, record.readUTF()));
+			plain = true;
+		} else if (type == POINTS) {
+			Player player = players.get(nick);
+			if (player != null) {
+				player.setPoints(record.readInt());
+			}
+		}
+	}
+
+	/**
+	 * Reads the hash of a player's password, written by writeHash(),
+	 * 		and creates the player, whose password is not known.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param in - the input where the hash is
+	 * 
+	 * @return the player
+	 * 
+	 * @throws IOException - if the hash cannot be read
+	 */
+	private static Player readPlayer(String nick, DataInput in) throws IOException {
+		int    iterations = in.readInt();
+		byte[] salt       = new byte[Player.SALT_LENGTH],
+			   hash       = new byte[Player.HASH_LENGTH];
+		in.readFully(salt);
+		in.readFully(hash);
+		return new Player(nick, salt, hash, iterations);
+	}
+
+	/**
+	 * Writes the hash of a player's password: the number of iterations,
+	 * 		the salt and the hash itself.
+	 * 
+	 * @param player - the player
+	 * @param out - the output where the hash is written
+	 * 
+	 * @throws IOException - if the hash cannot be written
+	 */
+	private static void writeHash(Player player, DataOutput out) throws IOException {
+		out.writeInt(player.iterations);
+		out.write(player.salt);
+		out.write(player.hash);
+	}
+
+	/**
+	 * Creates a player to be registered in this log, with a new salt
+	 * 		and the hash of its password. The nick is written in
+	 * 		modified UTF-8, so it must have at most MAX_TEXT characters,
+	 * 		which take at most 3 bytes each.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param password - the player's password
+	 * 
+	 * @return a new player
+	 * 
+	 * @throws IllegalArgumentException - if the nick is too long to be kept
+	 */
+	public Player newPlayer(String nick, String password) {
+		if (nick.length() > MAX_TEXT) {
+			throw new IllegalArgumentException("Nickname too long");
+		}
+		return new Player(nick, password);
+	}
+
+	/**
+	 * Loads a player that was not recovered: there are none,
+	 * 		since all players are recovered.
+	 * 
+	 * @param nick - the player's nickname
+	 * 
+	 * @return null
+	 */
+	public Player load(String nick) {
+		return null;
+	}
+
+	/**
+	 * Appends the registration of a player, with the hash of its password.
+	 * 
+	 * @param player - the new player
+	 * 
+	 * @return the future of the batch of the record
+	 * 
+	 * @throws IOException - if the record cannot be written
+	 */
+	public synchronized CompletableFuture<Void> register(Player player)
+	throws IOException {
+		bytes.reset();
+		data.writeByte(REGISTER);
+		data.writeUTF(player.getNick());
+		writeHash(player, data);
+		return append();
+	}
+
+	/**
+	 * Appends the points set to a player.
+	 * 
+	 * @param player - the player
+	 * @param points - the points set, as in Player.setPoints()
+	 * 
+	 * @return the future of the batch of the record
+	 * 
+	 * @throws IOException - if the record cannot be written
+	 */
+	public synchronized CompletableFuture<Void> points(Player player, int points)
+	throws IOException {
+		bytes.reset();
+		data.writeByte(POINTS);
+		data.writeUTF(player.getNick());
+		data.writeInt(points);
+		return append();
+	}
+
+	/**
+	 * Adds the record in <i>bytes</i>, framed by its length and CRC,
+	 * 		to the current batch.
+	 * 
+	 * @return the future of the current batch
+	 */
+	private CompletableFuture<Void> append() {
+		int length = bytes.size();
+
+		if (pending.remaining() < 4 + length + 4) {
+			ByteBuffer larger = ByteBuffer.allocate(2 * (pending.capacity() + length));
+			pending.flip();
+			pending = larger.put(pending);
+		}
+		crc.reset();
+		crc.update(bytes.array(), 0, length);
+		pending.putInt(length).put(bytes.array(), 0, length).putInt((int) crc.getValue());
+		records++;
+		batched++;
+		return batch;
+	}
+
+	/**
+	 * Writes the current batch to the log and forces it to disk,
+	 * 		completing its future (exceptionally, if it fails).
+	 * 		Records appended meanwhile go to the next batch.<br>
+	 * If the batch cannot be written, the log is cut back to its length
+	 * 		before the write, so that no part of a record is left before
+	 * 		the records appended later, and the records of the batch
+	 * 		are put back at the start of the next one, to be written
+	 * 		by the next flush.
+	 * 
+	 * @throws IOException - if the log cannot be written or forced
+	 */
+	public void flush() throws IOException {
+		synchronized (io) {
+			ByteBuffer              buffer;
+			CompletableFuture<Void> done;
+			int                     count;
+			long                    start = -1;
+
+			synchronized (this) {
+				if (batched == 0) {
+					return;
+				}
+				buffer  = pending;
+				pending = spare;
+				spare   = buffer;
+				done    = batch;
+				count   = batched;
+				batch   = new Batch(this);
+				batched = 0;
+			}
+			buffer.flip();
+			try {
+				start = channel.position();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+				buffer.clear();
+				done.complete(null);
+			} catch (IOException cause) {
+				rewind(start, cause);
+				requeue(buffer, count);
+				done.completeExceptionally(cause);
+				throw cause;
+			}
+		}
+	}
+
+	/**
+	 * Cuts the log back to the length it had before a failed write.
+	 * 		If that fails too, the failure is added to the cause.
+	 * 
+	 * @param start - the length of the log before the write,
+	 * 		or -1 if it is not known
+	 * @param cause - the failure of the write
+	 */
+	private void rewind(long start, IOException cause) {
+		if (start >= 0) {
+			try {
+				channel.truncate(start);
+				channel.position(start);
+			} catch (IOException failure) {
+				cause.addSuppressed(failure);
+			}
+		}
+	}
+
+	/**
+	 * Puts the records of a batch that failed to be written back
+	 * 		at the start of the current batch.
+	 * 
+	 * @param buffer - the records of the failed batch
+	 * @param count - the number of records in it
+	 */
+	private synchronized void requeue(ByteBuffer buffer, int count) {
+		ByteBuffer merged = ByteBuffer.allocate(buffer.limit() + pending.capacity());
+
+		buffer.position(0);
+		pending.flip();
+		pending  = merged.put(buffer).put(pending);
+		batched += count;
+		buffer.clear();
+	}
+
+	/**
+	 * Retrieves the number of records in the current batch.
+	 * 
+	 * @return the number of records appended since the last flush
+	 */
+	public int pending() {
+		return batched;
+	}
+
+	/**
+	 * Retrieves the number of records in the current log.
+	 * 
+	 * @return the number of records appended since the last compaction
+	 */
+	public int size() {
+		return records;
+	}
+
+	/**
+	 * Writes all players to a new snapshot and starts a new, empty log,
+	 * 		deleting the older ones.
+	 * 
+	 * @param players - all the players
+	 * 
+	 * @throws IOException - if the files cannot be written
+	 */
+	public void compact(Collection<Player> players) throws IOException {
+		synchronized (io) {
+			flush();
+			channel.close();
+			open(generation + 1);
+
+			File temporary = new File(directory, SNAPSHOT + ".tmp");
+			try (FileOutputStream file = new FileOutputStream(temporary);
+				 DataOutputStream out  = new DataOutputStream(new BufferedOutputStream(file))) {
+				out.writeInt(MAGIC);
+				out.writeLong(generation);
+				out.writeInt(players.size());
+				for(Player player: players) {
+					out.writeUTF(player.getNick());
+					writeHash(player, out);
+					out.writeInt(player.getPoints());
+					out.writeInt(player.getAccumulated());
+				}
+				out.flush();
+				file.getFD().sync();
+			}
+			Files.move(temporary.toPath(), new File(directory, SNAPSHOT).toPath(),
+					   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			for(long log = generation - 1; logFile(log).delete(); log--) {
+				// deleted a log now in the snapshot
+			}
+		}
+	}
+
+	/**
+	 * Moves the snapshot and the current log to another directory,
+	 * 		compacting them first.
+	 * 
+	 * @param target - the new directory of the files
+	 * @param players - all the players
+	 * 
+	 * @throws IOException - if the files cannot be written or moved
+	 */
+	public void moveTo(File target, Collection<Player> players) throws IOException {
+		synchronized (io) {
+			compact(players);
+			channel.close();
+			Files.move(new File(directory, SNAPSHOT).toPath(),
+					   new File(target, SNAPSHOT).toPath(),
+					   StandardCopyOption.REPLACE_EXISTING);
+			Files.move(logFile(generation).toPath(),
+					   new File(target, LOG + generation).toPath(),
+					   StandardCopyOption.REPLACE_EXISTING);
+			directory = target;
+			open(generation);
+			channel.position(channel.size());
+		}
+	}
+
+	/**
+	 * Writes the current batch to disk and closes the log.
+	 * 
+	 * @throws IOException - if the log cannot be written or closed
+	 */
+	public void close() throws IOException {
+		synchronized (io) {
+			flush();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Opens the log of a generation to append records to it.
+	 * 
+	 * @param log - the generation of the log
+	 * 
+	 * @throws IOException - if the file cannot be opened
+	 */
+	private void open(long log) throws IOException {
+		generation = log;
+		records    = 0;
+		channel    = FileChannel.open(logFile(log).toPath(),
+									  StandardOpenOption.CREATE,
+									  StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Retrieves the log file of a generation.
+	 * 
+	 * @param log - the generation of the log
+	 * 
+	 * @return the file of that log
+	 */
+	private File logFile(long log) {
+		return new File(directory, LOG + log);
+	}
+
+	/**
+	 * The contents of the record being written, whose bytes can be
+	 * 		read without copying them.
+	 */
+	private static class Record extends ByteArrayOutputStream {
+		/**
+		 * Retrieves the array holding the bytes written.
+		 * 
+		 * @return the array, whose first size() bytes are the record
+		 */
+		byte[] array() {
+			return buf;
+		}
+	}
+}
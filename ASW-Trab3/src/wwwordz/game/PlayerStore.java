@@ -0,0 +1,190 @@
+package wwwordz.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Where Players keeps its players, kept in the <i>home</i> directory.<br><br>
+ * 
+ * Changes are committed in groups: each change is added to the current
+ * 		batch, and flush() writes the batch to disk, completing its future.
+ * 		A store may have all players on the heap, recovered on startup,
+ * 		or only those loaded when asked for.<br><br>
+ * 
+ * The changes of a player must be made in order, and compact() and
+ * 		moveTo() called while no changes are made: Players
+ * 		holds the player's lock to change it, and a lock shared by all
+ * 		changes, which compaction holds alone.
+ * 
+ * @see wwwordz.game.PlayerLog
+ * @see wwwordz.game.MappedPlayerStore
+ */
+interface PlayerStore {
+
+	/**
+	 * Opens the store, reading the players that are kept on the heap.
+	 * 
+	 * @return the players recovered, indexed by nick
+	 * 		(those not recovered are loaded with load())
+	 * 
+	 * @throws IOException - if the files cannot be read or written
+	 */
+	Map<String,Player> recover() throws IOException;
+
+	/**
+	 * Creates a player to be registered in this store, checking first
+	 * 		that the store can keep it, so that its registration,
+	 * 		which may be written later, does not fail. The password
+	 * 		is hashed (see Player), and only its hash is kept.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param password - the player's password
+	 * 
+	 * @return a new player
+	 * 
+	 * @throws IllegalArgumentException - if the nick is too long to be kept
+	 */
+	Player newPlayer(String nick, String password);
+
+	/**
+	 * Loads a player that was not recovered.
+	 * 
+	 * @param nick - the player's nickname
+	 * 
+	 * @return the player, or null if there is no such player
+	 * 
+	 * @throws IOException - if the player cannot be read
+	 */
+	Player load(String nick) throws IOException;
+
+	/**
+	 * Registers a new player, created by newPlayer().
+	 * 
+	 * @param player - the new player
+	 * 
+	 * @return the future of the batch of the change
+	 * 
+	 * @throws IOException - if the player cannot be written
+	 */
+	CompletableFuture<Void> register(Player player) throws IOException;
+
+	/**
+	 * Keeps the points just set to a player.
+	 * 
+	 * @param player - the player, with its points already set
+	 * @param points - the points set, as in Player.setPoints()
+	 * 
+	 * @return the future of the batch of the change
+	 * 
+	 * @throws IOException - if the points cannot be written
+	 */
+	CompletableFuture<Void> points(Player player, int points) throws IOException;
+
+	/**
+	 * Writes the current batch to disk, completing its future
+	 * 		(exceptionally, if it fails).
+	 * 
+	 * @throws IOException - if the batch cannot be written
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Retrieves the number of changes in the current batch.
+	 * 
+	 * @return the number of changes since the last flush
+	 */
+	int pending();
+
+	/**
+	 * Retrieves the number of changes that compact() would discard.
+	 * 
+	 * @return the number of changes since the last compaction
+	 * 		(always 0 if compacting is never needed)
+	 */
+	int size();
+
+	/**
+	 * Replaces all players kept by the given ones.
+	 * 
+	 * @param players - all the players
+	 * 
+	 * @throws IOException - if the players cannot be written
+	 */
+	void compact(Collection<Player> players) throws IOException;
+
+	/**
+	 * Moves the files of the store to another directory.
+	 * 
+	 * @param target - the new directory of the files
+	 * @param players - all the players on the heap
+	 * 
+	 * @throws IOException - if the files cannot be written or moved
+	 */
+	void moveTo(File target, Collection<Player> players) throws IOException;
+
+	/**
+	 * Writes the current batch to disk and closes the store.
+	 * 
+	 * @throws IOException - if the store cannot be written or closed
+	 */
+	void close() throws IOException;
+
+	/**
+	 * The future of a batch, which writes the batch when waited on,
+	 * 		if it is not written yet. So, those who wait do not wait
+	 * 		for the next periodic flush, and those who wait while
+	 * 		a batch is written share the next write.
+	 */
+	class Batch extends CompletableFuture<Void> {
+		private final PlayerStore store;
+
+		/**
+		 * Creates the future of a batch of a store.
+		 * 
+		 * @param store - the store that writes the batch
+		 */
+		Batch(PlayerStore store) {
+			this.store = store;
+		}
+
+		@Override
+		public Void get() throws InterruptedException, ExecutionException {
+			write();
+			return super.get();
+		}
+
+		@Override
+		public Void get(long timeout, TimeUnit unit)
+		throws InterruptedException, ExecutionException, TimeoutException {
+			write();
+			return super.get(timeout, unit);
+		}
+
+		@Override
+		public Void join() {
+			write();
+			return super.join();
+		}
+
+		/**
+		 * Writes the current batch, unless this one is written already.
+		 * 		Once flush() returns, this batch is done: it was either
+		 * 		the current one, or written by the flush waited for.
+		 */
+		private void write() {
+			if (!isDone()) {
+				try {
+					store.flush();
+				} catch (IOException cause) {
+					// the future of the batch that failed has the cause
+				}
+			}
+		}
+	}
+}
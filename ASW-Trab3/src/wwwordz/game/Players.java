@@ -1,15 +1,19 @@
 package wwwordz.game;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import wwwordz.shared.WWWordzException;
 
@@ -17,21 +21,71 @@ import wwwordz.shared.WWWordzException;
  * "Persistent collection of players indexed by nick.<br><br>
  *
  * Each player has nick, password, points and accumulated points. 
- * Data is persisted using serialization 
- * and backup each time a new user is created or points are changed.<br><br>
+ * Data is persisted each time a new user is created or points are changed.<br><br>
  *
  * This class is a singleton."<br><br>
  * 
- * The default name of the .ser file is "players".
+ * Rather than serializing all players on every change, each change is
+ * 		appended to a log, as a small binary record. Players are changed
+ * 		in memory at once, and their changes put in a bounded queue
+ * 		(see setQueueCapacity()), written by a thread of its own and
+ * 		committed in groups: written to disk, in one write and one fsync,
+ * 		every few milliseconds (see setFlushInterval()) or as soon as
+ * 		there are enough of them (see setSyncEvery()). So, when all
+ * 		players report their points at once, none of them waits for
+ * 		the disk, unless the queue is full, and then only for a while
+ * 		(see setQueueTimeout()), after which the change fails;
+ * 		those that need to can wait on the future returned by addPoints(). The changes still queued
+ * 		are written when the server shuts down. The depth of the queue and
+ * 		the time taken to write to disk are available as metrics.
+ * 		When the log has more records than there are players
+ * 		(and at least COMPACT_MIN), all players are written to a snapshot
+ * 		and a new log is started, so the cost of a change stays constant.
+ * 		Players are recovered from the snapshot and the log when
+ * 		the instance is created. The files are kept in the <i>home</i>
+ * 		directory, by default the working directory.<br><br>
+ * 
+ * Alternatively (see setMapped()), players are kept in memory-mapped
+ * 		files of fixed-size records, where points are changed in place,
+ * 		and only players that are verified or scored are loaded
+ * 		onto the heap, so that the instance is created at once,
+ * 		however many players there are.<br><br>
+ * 
+ * Players are registered and scored by many servlet threads at once.
+ * 		They are kept in a concurrent map, where a new player is created,
+ * 		and its registration logged, atomically (see verify()), and the
+ * 		points of a player are changed, and logged, holding the lock of
+ * 		that player only, so that its records are in the order of its
+ * 		changes. Compacting the log needs all players as they were when
+ * 		the new log started, so changes share a read lock, and compaction
+ * 		holds the write lock, just long enough to copy all players,
+ * 		which the writer thread then writes as a snapshot.
+ * 
+ * @see wwwordz.game.AsyncPlayerStore
+ * @see wwwordz.game.PlayerLog
+ * @see wwwordz.game.MappedPlayerStore
  *
  * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/game/Players.html
  */
 public class Players implements Serializable {
 	private static final long   serialVersionUID = 1L;
+	private static final int    DEFAULT_SYNC_EVERY     = 256,
+								DEFAULT_QUEUE_CAPACITY = 65536,
+								COMPACT_MIN            = 10000;
+	private static final long   DEFAULT_FLUSH_INTERVAL = 10,
+								DEFAULT_QUEUE_TIMEOUT  = 1000;
+	private static final Future<Void> UNLOGGED = CompletableFuture.completedFuture(null);
+	private static final ReadWriteLock lock    = new ReentrantReadWriteLock();
 	private static Players      players          = null;
 	private static Map<String, Player> playersMap;
-	transient private static File home = null,
-								  file = null;
+	private static volatile int  syncEvery       = DEFAULT_SYNC_EVERY;
+	private static volatile long flushInterval   = DEFAULT_FLUSH_INTERVAL;
+	private static volatile int  queueCapacity   = DEFAULT_QUEUE_CAPACITY;
+	private static volatile long queueTimeout    = DEFAULT_QUEUE_TIMEOUT;
+	private static volatile boolean mapped       = false;
+	transient private static File        home  = null;
+	transient private static AsyncPlayerStore store = null;
+	transient private static volatile Thread shutdown = null;
 	
 	/**
 	 * Simply initializes an empty collection of players
@@ -39,55 +93,180 @@ public class Players implements Serializable {
 	 * 
 	 */
 	private Players() {
-			playersMap = new HashMap<String, Player>();
+			playersMap = new ConcurrentHashMap<String, Player>();
 	}
 	
 	/**
-	 * Retrieves the location of the file
-	 * 	where the serialized content is kept,
+	 * Retrieves the location of the directory
+	 * 	where the files of the players are kept,
 	 *  store in the field <i>home</i> of this class
 	 * 
-	 * @return an "abstract" file with the location of the .ser file
+	 * @return an "abstract" file with the location of the directory,
+	 * 		or null if the instance was not created yet
 	 */
 	public static File getHome() {
 		return home;
 	}
 	
 	/**
-	 * Changes the location of the .ser file,
-	 * 		while also moving the file to the
-	 * 		new home location.<br>
-	 * The new home location must be valid,
-	 * 		so that the current .ser file
+	 * Changes the location of the files of the players,
+	 * 		while also moving them to the
+	 * 		new home location, if the instance exists.<br>
+	 * The new home location must be an existing directory,
+	 * 		so that the current files
 	 * 		can be moved to it.
 	 * 
-	 * @param home - an "abstract" file with the new location of the .ser file
+	 * @param home - an "abstract" file with the new location of the directory
 	 */
-	public static void setHome(File home) {
+	public static synchronized void setHome(File home) {
+		Lock all = lock.writeLock();
+		all.lock();
 		try {
-			Files.move(file.toPath(), home.toPath());
+			if (store != null) {
+				store.moveTo(home, copies());
+			}
 			Players.home = home;
 		} catch (IOException cause) {
 			cause.printStackTrace();
+		} finally {
+			all.unlock();
 		}
 	}
 	
+	/**
+	 * Retrieves the number of changes that are written to disk
+	 * 		as soon as they are made, without waiting for the next flush.
+	 * 
+	 * @return the number of log records that start a flush
+	 */
+	public static int getSyncEvery() {
+		return syncEvery;
+	}
+
+	/**
+	 * Changes the number of changes that are written to disk
+	 * 		as soon as they are made, without waiting for the next flush.
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param syncEvery - the number of log records that start a flush
+	 */
+	public static void setSyncEvery(int syncEvery) {
+		Players.syncEvery = syncEvery;
+	}
+
+	/**
+	 * Retrieves the interval between flushes of the changes to disk.
+	 * 
+	 * @return the interval, in milliseconds
+	 */
+	public static long getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * Changes the interval between flushes of the changes to disk:
+	 * 		the longest a change is kept only in memory, unless there are
+	 * 		enough changes to flush them earlier (see setSyncEvery()).
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param flushInterval - the interval, in milliseconds
+	 */
+	public static void setFlushInterval(long flushInterval) {
+		Players.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Retrieves the number of changes that can wait to be written to disk.
+	 * 
+	 * @return the capacity of the queue of changes
+	 */
+	public static int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Changes the number of changes that can wait to be written to disk:
+	 * 		once there are as many, changing a player waits for room
+	 * 		in the queue (see setQueueTimeout()).
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param queueCapacity - the capacity of the queue of changes
+	 */
+	public static void setQueueCapacity(int queueCapacity) {
+		Players.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Retrieves the longest a change waits for room in the queue of changes.
+	 * 
+	 * @return the timeout, in milliseconds
+	 */
+	public static long getQueueTimeout() {
+		return queueTimeout;
+	}
+
+	/**
+	 * Changes the longest a change waits for room in the queue of changes,
+	 * 		when it is full: the request making the change then fails,
+	 * 		rather than holding the locks of the players any longer.
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param queueTimeout - the timeout, in milliseconds
+	 */
+	public static void setQueueTimeout(long queueTimeout) {
+		Players.queueTimeout = queueTimeout;
+	}
+
+	/**
+	 * Checks if players are kept in memory-mapped records,
+	 * 		rather than in a log.
+	 * 
+	 * @return a boolean value, true if players are kept in records
+	 */
+	public static boolean isMapped() {
+		return mapped;
+	}
+
+	/**
+	 * Changes where players are kept: in memory-mapped records, loaded
+	 * 		when needed, or in a log, all recovered onto the heap.
+	 * 		Players kept in one are not seen by the other.
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param mapped - true to keep players in records
+	 */
+	public static void setMapped(boolean mapped) {
+		Players.mapped = mapped;
+	}
+
 	/**
 	 * Accesses the internal, single instance of this class.
 	 * Calling this method for the first time will create the
-	 * 		instance, initialize the default location of the .ser file,
-	 *  	and possibly restoring an existing version of it.
+	 * 		instance, initialize the default location of the files,
+	 *  	and recover the players kept in them, if any.
+	 * It also starts the thread that writes the changes,
+	 * 		which writes all of them when the players are closed,
+	 * 		or else when the server shuts down.
 	 * 
 	 * @return the single instance of Players class
 	 */
-	public static Players getInstance() {
+	public static synchronized Players getInstance() {
 		if (players == null) {
-			home = new File(System.getProperty("user.dir"));
-			file = new File(home + "/players.ser");
-			if (file.canRead()) {
-				players = restore();
-			} else {
-				players = new Players();
+			if (home == null) {
+				home = new File(System.getProperty("user.dir"));
+			}
+			players = new Players();
+			store   = new AsyncPlayerStore(mapped ? new MappedPlayerStore(home)
+													  : new PlayerLog(home),
+											   queueCapacity, syncEvery, flushInterval,
+											   queueTimeout);
+			try {
+				playersMap.putAll(store.recover());
+				shutdown = new Thread(Players::close, "Players shutdown");
+				Runtime.getRuntime().addShutdownHook(shutdown);
+			} catch (IOException cause) {
+				cause.printStackTrace();
+				store = null;
 			}
 		}
 		return players;
@@ -101,7 +280,10 @@ public class Players implements Serializable {
 	 * 		the verification.
 	 * If the nickname cannot be found, the player will be
 	 * 		created in the database.<br>
-	 * Calls for a backup on success.
+	 * Logs the new player on success. When several threads register
+	 * 		the same nickname at once, only one of the players they
+	 * 		create is added and logged, and only its password is accepted. A player that could not
+	 * 		be kept on disk is not created at all.
 	 * 
 	 * @param nick - the player's nickname, as a String
 	 * @param password - the player's password, as a String
@@ -109,63 +291,155 @@ public class Players implements Serializable {
 	 * @return a boolean value to determine if the player's
 	 * 		credentials match an existing player; also returns
 	 * 		true if the non-existing player was created in the process
+	 * 
+	 * @throws WWWordzException - if the player does not exist
+	 * 		and its nickname is too long to be kept,
+	 * 		or its registration cannot be logged
 	 */
-	public boolean verify(String nick, String password) {
+	public boolean verify(String nick, String password) throws WWWordzException {
 		Player player = getPlayer(nick);
 		if (player == null) {
-			playersMap.put(nick, new Player(nick, password));
-			backup();
-			return true;
-		} else if (password.equals(player.getPassword())) {
-			return true;
+			Player created;
+			try {
+				created = store != null ? store.newPlayer(nick, password)
+										: new Player(nick, password);
+			} catch (IllegalArgumentException cause) {
+				throw new WWWordzException(cause.getMessage() + "\n", cause);
+			}
+			Lock changes = lock.readLock();
+			changes.lock();
+			try {
+				player = playersMap.putIfAbsent(nick, created);
+				if (player == null) {
+					player = created;
+					register(player);
+				}
+			} catch (IOException cause) {
+				playersMap.remove(nick, created);
+				throw new WWWordzException("Cannot register right now\n", cause);
+			} finally {
+				changes.unlock();
+			}
+			logged();
+		}
+		return player.checkPassword(password);
+	}
+
+	/**
+	 * Logs the registration of a new player, once it is added
+	 * 		to <i>playersMap</i>. The player is created beforehand,
+	 * 		since hashing its password is slow, so that no lock
+	 * 		is held meanwhile, and only the player added is logged.
+	 * 
+	 * @param player - the new player
+	 * 
+	 * @throws IOException - if the registration cannot be logged
+	 */
+	private void register(Player player) throws IOException {
+		if (store != null) {
+			store.register(player);
 		}
-		return false;
 	}
 	
 	/**
 	 * Resets the player's points back to zero.<br>
-	 * Calls for a backup on success.
+	 * Logs the change on success.
 	 * 
 	 * @param nick - the player's nickname
 	 * 
+	 * @return a future completed when the change is on disk
+	 * 
 	 * @throws WWWordzException - if the given nickname 
 	 * 							  does not belong to any stored Player instance
 	 */
-	public void resetPoints(String nick) throws WWWordzException {
-		Player player = getPlayer(nick);
-		if (player == null) {
-			throw new WWWordzException("Player not found\n");
-		} else {
-			player.setPoints(0);
-			backup();
-		}
-		
+	public Future<Void> resetPoints(String nick) throws WWWordzException {
+		return addPoints(nick, 0);
 	}
 	
 	/**
 	 * Adds a number of points to a player.<br>
-	 * Calls for a backup on success.
+	 * Logs the change on success, without waiting for it
+	 * 		to be written to disk.
 	 * 
 	 * @param nick - the player's nickname
 	 * @param points - the number of points to be added
 	 * 
+	 * @return a future completed when the change is on disk
+	 * 		(at once, if the players could not be recovered
+	 * 		and changes are not logged)
+	 * 
 	 * @throws WWWordzException - if the given nickname
-	 * 							  does not belong to any stored Player instance
+	 * 							  does not belong to any stored Player instance,
+	 * 							  or the change cannot be logged
+	 * 							  (and the points are not added)
 	 */
-	public void addPoints(String nick, int points) throws WWWordzException {
+	public Future<Void> addPoints(String nick, int points)
+	throws WWWordzException {
 		Player player = getPlayer(nick);
 		if (player == null) {
 			throw new WWWordzException("Player not found\n");
 		} else {
-			player.setPoints(points);
-			backup();
+			Future<Void> done    = UNLOGGED;
+			Lock         changes = lock.readLock();
+			changes.lock();
+			try {
+				synchronized (player) {
+					int previous = player.getPoints();
+					player.setPoints(points);
+					try {
+						if (store != null) {
+							done = store.points(player, points);
+						}
+					} catch (IOException cause) {
+						player.unsetPoints(previous, points);
+						throw new WWWordzException("Cannot add points right now\n", cause);
+					}
+				}
+			} finally {
+				changes.unlock();
+			}
+			logged();
+			return done;
 		}
 	}
+
+	/**
+	 * Writes the changes made so far to disk, and waits for them.
+	 * 
+	 */
+	public void sync() {
+		try {
+			if (store != null) {
+				store.flush();
+			}
+		} catch (IOException cause) {
+			cause.printStackTrace();
+		}
+	}
+
+	/**
+	 * Retrieves the number of changes waiting to be written to disk.
+	 * 
+	 * @return the depth of the queue of changes
+	 */
+	public int getQueueDepth() {
+		return store != null ? store.depth() : 0;
+	}
+
+	/**
+	 * Retrieves the time taken to write the changes to disk,
+	 * 		on average over the last writes.
+	 * 
+	 * @return the write latency, in microseconds
+	 */
+	public long getWriteLatency() {
+		return store != null ? store.latency() : 0;
+	}
 	
 	/**
 	 * Retrieves a Player instance from the internal
 	 * 		Collection <i>playersMap</i> through a given
-	 * 		nickname.
+	 * 		nickname, loading it from the store if it is not there.
 	 * 
 	 * @param nick - the player's nickname
 	 * 
@@ -173,53 +447,128 @@ public class Players implements Serializable {
 	 * 		   or null if none is found
 	 */
 	public Player getPlayer(String nick) {
-		return playersMap.get(nick);
+		Player player = playersMap.get(nick);
+		if (player == null && store != null) {
+			Lock changes = lock.readLock();
+			changes.lock();
+			try {
+				player = playersMap.computeIfAbsent(nick, this::load);
+			} finally {
+				changes.unlock();
+			}
+		}
+		return player;
+	}
+
+	/**
+	 * Loads a player from the store, while it is added
+	 * 		to <i>playersMap</i>.
+	 * 
+	 * @param nick - the player's nickname
+	 * 
+	 * @return the player, or null if there is no such player
+	 */
+	private Player load(String nick) {
+		try {
+			return store.load(nick);
+		} catch (IOException cause) {
+			cause.printStackTrace();
+			return null;
+		}
 	}
 	
 	/**
-	 * Clears the internal Collection of Player instances.
+	 * Clears the internal Collection of Player instances,
+	 * 		and the persisted players with it.
 	 * 
 	 */
 	public void cleanup() {
 		if (playersMap != null) {
-			playersMap.clear();
+			Lock all = lock.writeLock();
+			all.lock();
+			try {
+				playersMap.clear();
+				if (store != null) {
+					store.compact(Collections.<Player>emptyList());
+					store.flush();
+				}
+			} catch (IOException cause) {
+				cause.printStackTrace();
+			} finally {
+				all.unlock();
+			}
 		}
 	}
 	
 	/**
-	 * Attempts to restore an existing instance of this class,
-	 * 		serialized and stored in a .ser file at the <i>home</i>
-	 * 		field location.
-	 * 
-	 * @return an instance of Players, previously serialized,
-	 * 		   or null if the file cannot be found
-	 */
-	private static Players restore() {
-		if (file.canRead()) {
-			try (
-			 FileInputStream stream = new FileInputStream(file);
-			 ObjectInputStream deserializer = new ObjectInputStream(stream))
-			{
-				playersMap = new HashMap<String, Player>();
-				return (Players) deserializer.readObject();
-			} catch (IOException | ClassNotFoundException cause) {
+	 * Follows a change just logged: has all players written
+	 * 		to a new snapshot, starting a new log,
+	 * 		if the log has more records than there are players
+	 * 		(and at least COMPACT_MIN).
+	 * 
+	 */
+	private void logged() {
+		if (store == null) {
+			return;
+		}
+		if (store.size() > Math.max(COMPACT_MIN, playersMap.size())) {
+			Lock all = lock.writeLock();
+			all.lock();
+			try {
+				if (store.size() > Math.max(COMPACT_MIN, playersMap.size())) {
+					store.compact(copies());
+				}
+			} catch (IOException cause) {
 				cause.printStackTrace();
+			} finally {
+				all.unlock();
 			}
 		}
-		
-		return null;
 	}
-	
+
 	/**
-	 * Serializes this singleton's instance into a .ser file
-	 * 		at the <i>home</i> field location.
+	 * Copies all players on the heap, as they are now, for the writer
+	 * 		thread to write while they change.
+	 * 		It must be called holding the write lock.
 	 * 
+	 * @return a copy of each player
 	 */
-	private static void backup() {
-		try (
-		 FileOutputStream stream = new FileOutputStream(file);
-		 ObjectOutputStream serializer = new ObjectOutputStream(stream)) {
-			serializer.writeObject(players);
+	private static Collection<Player> copies() {
+		List<Player> copies = new ArrayList<Player>(playersMap.size());
+		for(Player player: playersMap.values()) {
+			Player copy = new Player(player.getNick(), player.salt,
+									 player.hash, player.iterations);
+			copy.setPoints(player.getPoints());
+			copy.setAccumulated(player.getAccumulated());
+			copies.add(copy);
+		}
+		return copies;
+	}
+
+	/**
+	 * Writes the changes still queued and closes the files of the players,
+	 * 		when the web application stops (see PlayersListener),
+	 * 		or else when the server shuts down. It removes the hook
+	 * 		that closes them on shutdown, so that neither the hook
+	 * 		nor the players are kept once the application is gone.
+	 * 		Changes made afterwards fail.
+	 * 
+	 * @see wwwordz.server.PlayersListener
+	 */
+	public static void close() {
+		Thread hook = shutdown;
+		if (hook != null && hook != Thread.currentThread()) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(hook);
+			} catch (IllegalStateException shuttingDown) {
+				// the hook is running already
+			}
+		}
+		shutdown = null;
+		try {
+			if (store != null) {
+				store.close();
+			}
 		} catch (IOException cause) {
 			cause.printStackTrace();
 		}
@@ -3,11 +3,12 @@
 package wwwordz.game;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import wwwordz.shared.*;
 import wwwordz.puzzle.*;
@@ -28,7 +29,7 @@ import wwwordz.puzzle.*;
  *	<ol>
  *   <li> register() - join</li>
  *   <li> getPuzzle() - play</li>
- *   <li> setPoints() - register</li>
+ *   <li> submitWords() - report</li>
  *   <li> getRanking() - ranking</li>
  *  </ol>
  *  When executed outside their stages 
@@ -36,8 +37,13 @@ import wwwordz.puzzle.*;
  * The start times of each stage, including the end of the round,
  * 		are being stored in static fields, assuming that there will
  * 		only be one active round at any moment.<br>
+ * Puzzles are taken from the PuzzlePool, where they are generated
+ * 		in the background, so creating a round does not wait for one,
+ * 		or, if a PuzzleLibrary with puzzles is set, read from the library.<br>
  * Each instance also contains its own puzzle instance,
- * 		a Map of players indexed by their nickname
+ * 		the copy of it sent to clients, which has no solutions,
+ * 		a Map of players indexed by their nickname,
+ * 		the Set of nicknames of those who already submitted their words
  *  	and a List of Rank objects for the final ranking stage.
  * 
  *  @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/game/Round.html
@@ -48,8 +54,11 @@ public class Round {
 	static Date   	   		   report;
 	static Date   	   		   ranking;
 	static Date   	   		   end;
+	private static volatile PuzzleLibrary library = null;
 	private Puzzle 		  	   puzzle;
+	private Puzzle 		  	   played;
 	private Map<String,Player> roundPlayers;
+	private Set<String>		   submitted;
 	private List<Rank> 		   rankList;
 	
 	/**
@@ -72,11 +81,35 @@ public class Round {
 		setRankingStageDuration(rankingDuration);
 		
 		
-		roundPlayers = new HashMap<String,Player>();
-		puzzle 		 = new Generator().generate();
+		roundPlayers = new ConcurrentHashMap<String,Player>();
+		submitted	 = ConcurrentHashMap.newKeySet();
+		PuzzleLibrary current = library;
+		puzzle 		 = current != null && current.size() > 0 ? current.random()
+									   : PuzzlePool.getInstance().take();
+		played		 = new Puzzle();
+		played.setTable(puzzle.getTable().copy());
+		played.setSolutions(new ArrayList<Puzzle.Solution>());
 		rankList 	 = null;
 	}
 	
+	/**
+	 * Retrieves the library the puzzles of new rounds are read from.
+	 * 
+	 * @return the current PuzzleLibrary, or null if puzzles are generated
+	 */
+	public static PuzzleLibrary getLibrary() {
+		return library;
+	}
+
+	/**
+	 * Changes the library the puzzles of new rounds are read from.
+	 * 
+	 * @param library - the new PuzzleLibrary, or null to generate puzzles
+	 */
+	public static void setLibrary(PuzzleLibrary library) {
+		Round.library = library;
+	}
+	
 	/**
 	 * Calculates the time remaining of stage JOIN
 	 * 		in a difference with the next stage's start time.
@@ -216,18 +249,19 @@ public class Round {
 		} else if (Players.getInstance().verify(nick, password) == false){
 			throw new WWWordzException("Wrong password for this player\n");
 		} else {
-			Player player = Players.getInstance().getPlayer(nick);
-			if (!roundPlayers.containsValue(player)) {
-				roundPlayers.put(nick, player);
-			}
+			roundPlayers.putIfAbsent(nick, Players.getInstance().getPlayer(nick));
 			return getTimetoNextPlay();
 		}
 	}
 	
 	/**
 	 * Retrieves this round's Puzzle instance if its current stage is PLAY.
+	 * The puzzle returned has this round's table, but neither
+	 * 		its solutions nor its seed, from which they could be
+	 * 		generated again, so that clients do not get the answers;
+	 * 		the solutions are kept here, to check and score words.
 	 * 
-	 * @return this round's Puzzle instance
+	 * @return this round's Puzzle instance, without solutions
 	 * 
 	 * @throws WWWordzException - if the round is not on stage PLAY
 	 */
@@ -235,32 +269,80 @@ public class Round {
 		if (!Stage.onStage(Stage.PLAY)) {
 			throw new WWWordzException("Cannot play right now\n");
 		} else {
-			return puzzle;
+			return played;
+		}
+	}
+	
+	/**
+	 * Checks a word found by a player in this round's puzzle,
+	 * 		while its current stage is PLAY.
+	 * The word is not kept; the player still reports it
+	 * 		on stage REPORT, when it is scored.
+	 * 
+	 * @param nick - the player's nickname
+	 * @param word - the word found by the player
+	 * 
+	 * @return the points the word is worth, or 0 if it is not
+	 * 		a solution of this round's puzzle
+	 * 
+	 * @throws WWWordzException - if player is not on this round
+	 * 						or if the round is not on stage PLAY
+	 */
+	public int checkWord(String nick, String word) throws WWWordzException {
+		if (!roundPlayers.containsKey(nick)) {
+			throw new WWWordzException("Player not found\n");
+		} else if (!Stage.onStage(Stage.PLAY)) {
+			throw new WWWordzException("Cannot play right now\n");
+		} else {
+			Puzzle.Solution solution = word == null ? null : puzzle.getSolution(word);
+			return solution == null ? 0 : solution.getPoints();
 		}
 	}
 	
 	/**
-	 * Sets this round's points of a player. 
+	 * Scores the words found by a player in this round's puzzle
+	 * 		and sets them as the player's points, so that
+	 * 		the points are computed by the server, not the client.
 	 * The player must be registered
 	 * and the round's stage must be REPORT for this method to succeed.
+	 * Each player submits its words only once per round.
 	 * 
 	 * @param nick - the player's nickname
-	 * @param points - the number of points to assign to the player
+	 * @param words - the words found by the player
+	 * 
+	 * @return the points assigned to the player
 	 * 
 	 * @throws WWWordzException - if player is not on this round,
-	 * 						or if the method is not called on stage REPORT
+	 * 						if the method is not called on stage REPORT,
+	 * 						if there are no words (null),
+	 * 						if the player already submitted them
+	 * 						or if the points cannot be kept, in which
+	 * 						case the words can be submitted again
+	 * 
+	 * @see wwwordz.shared.Puzzle.getPoints(Collection)
 	 */
-	public void setPoints(String nick, int points) throws WWWordzException {
+	public int submitWords(String nick, List<String> words) throws WWWordzException {
 		Player player = roundPlayers.get(nick);
 		if (player == null) {
 			throw new WWWordzException("Player not found\n");
 		} else if (!Stage.onStage(Stage.REPORT)) {
 			throw new WWWordzException("Cannot report points right now\n");
+		} else if (words == null) {
+			throw new WWWordzException("No words to report\n");
+		} else if (!submitted.add(nick)) {
+			throw new WWWordzException("Words already reported\n");
 		} else {
-			player.setPoints(points);
+			int points = puzzle.getPoints(words);
+			try {
+				Players.getInstance().addPoints(nick, points);
+			} catch (WWWordzException cause) {
+				submitted.remove(nick);
+				throw cause;
+			}
+			return points;
 		}
 	}
-	
+
 	/**
 	 * Creates the ranking list the first time is called
 	 * 		during the stage RANKING. It will also sort it
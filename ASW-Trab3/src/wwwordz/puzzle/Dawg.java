@@ -0,0 +1,301 @@
+package wwwordz.puzzle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A directed acyclic word graph, i.e. a Trie where equivalent nodes
+ * 		(same WORD mark and same children for the same letters) are stored
+ * 		only once. Words that share a suffix, such as the many inflections
+ * 		of Portuguese verbs, share the nodes of that suffix.<br><br>
+ * 
+ * It is built incrementally, following the algorithm by Daciuk et al.,
+ * 		so words must be put in alphabetical order. The nodes of the last
+ * 		word put are kept "open", since they may still gain children,
+ * 		and each is "closed" as soon as the next word leaves its prefix:
+ * 		it is either replaced by an equivalent node already in the graph,
+ * 		or registered as a new one. Calling pack() closes the remaining
+ * 		nodes, and only then can the graph be searched.<br><br>
+ * 
+ * Since a node may have several parents, children cannot be linked as
+ * 		siblings. Instead, the children of a node are kept in consecutive
+ * 		positions of the <i>edges</i> array, starting at the position kept
+ * 		in <i>children</i>, in alphabetical order.<br>
+ * 
+ * Searches and iterations use the same contract as any other Trie.
+ */
+public class Dawg extends Trie {
+	private static final int INITIAL_CAPACITY = 1 << 10;
+	int[]   edges;
+	int     edgeCount;
+	private int[][] open;
+	private int[]   openMasks;
+	private int     depth;
+	private String  previous;
+	private Map<State,Integer> register;
+
+	/**
+	 * Creates an empty graph, ready to receive words in alphabetical order.
+	 * 
+	 */
+	public Dawg() {
+		super(INITIAL_CAPACITY);
+		this.siblings  = null;
+		this.edges     = new int[INITIAL_CAPACITY];
+		this.edgeCount = 0;
+		this.open      = new int[1][ALPHABET];
+		this.openMasks = new int[1];
+		this.depth     = 0;
+		this.previous  = "";
+		this.register  = new HashMap<State,Integer>();
+	}
+
+	/**
+	 * Puts a word in the graph. Words must be put in alphabetical order;
+	 * 		repeating the last word has no effect.
+	 * 
+	 * @param word - the word to put in this graph
+	 * 
+	 * @throws IllegalArgumentException - if the word comes before the last
+	 * 		one put, or has a character outside the range 'A' to 'Z'
+	 * @throws IllegalStateException - if the graph was already packed
+	 */
+	public void put(String word) {
+		if (register == null) {
+			throw new IllegalStateException("Cannot put words in a packed graph");
+		}
+		int order = word.compareTo(previous);
+		if (order == 0) {
+			return;
+		} else if (order < 0) {
+			throw new IllegalArgumentException("Words out of order: "
+												+ previous + ", " + word);
+		}
+		for(int position = 0; position < word.length(); position++) {
+			if (indexOf(word.charAt(position)) < 0) {
+				throw new IllegalArgumentException("Invalid letter in " + word);
+			}
+		}
+
+		int prefix = 0;
+		while(prefix < previous.length()
+		   && previous.charAt(prefix) == word.charAt(prefix)) {
+			prefix++;
+		}
+		close(prefix);
+
+		if (word.length() >= open.length) {
+			int length = Math.max(word.length() + 1, open.length * 2);
+			open      = Arrays.copyOf(open, length);
+			openMasks = Arrays.copyOf(openMasks, length);
+		}
+		for(int level = prefix + 1; level <= word.length(); level++) {
+			if (open[level] == null) {
+				open[level] = new int[ALPHABET];
+			}
+			openMasks[level - 1] |= 1 << indexOf(word.charAt(level - 1));
+			openMasks[level]      = 0;
+		}
+		openMasks[word.length()] |= WORD;
+
+		depth    = word.length();
+		previous = word;
+	}
+
+	/**
+	 * Closes every node that is still open, ending the construction of
+	 * 		this graph. The root is stored last, as node 0,
+	 * 		and the structures needed only while building are released.
+	 * 
+	 */
+	public void pack() {
+		if (register == null) {
+			return;
+		}
+		close(0);
+
+		int first = edgeCount;
+		for(int bits = openMasks[0] & LETTERS; bits != 0; bits &= bits - 1) {
+			addEdge(open[0][Integer.numberOfTrailingZeros(bits)]);
+		}
+		masks[ROOT]    = openMasks[0];
+		children[ROOT] = first;
+
+		masks     = Arrays.copyOf(masks, size);
+		children  = Arrays.copyOf(children, size);
+		edges     = Arrays.copyOf(edges, edgeCount);
+		open      = null;
+		openMasks = null;
+		previous  = null;
+		register  = null;
+	}
+
+	/**
+	 * Retrieves the number of edges, i.e. of child references,
+	 * 		kept by this graph.
+	 * 
+	 * @return the number of edges of this graph
+	 */
+	public int edges() {
+		return edgeCount;
+	}
+
+	/**
+	 * Retrieves the child of a node through a given letter,
+	 * 		from the node's consecutive positions in <i>edges</i>.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position of the letter in the alphabet
+	 * 
+	 * @return the child node, or 0 if there is none
+	 */
+	int child(int node, int index) {
+		int mask = masks[node],
+			bit  = 1 << index;
+		if ((mask & bit) == 0) {
+			return 0;
+		}
+		return edges[children[node] + Integer.bitCount(mask & (bit - 1))];
+	}
+
+	/**
+	 * Retrieves the position of the edge from a node to one of its
+	 * 		children in the <i>edges</i> array.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position in the alphabet of the child's letter
+	 * 
+	 * @return the position of the edge
+	 */
+	int edge(int node, int index) {
+		return children[node] + Integer.bitCount(masks[node] & ((1 << index) - 1));
+	}
+
+	/**
+	 * Retrieves the number of edge positions, i.e. of edges.
+	 * 
+	 * @return the number of edges
+	 */
+	int edgeCapacity() {
+		return edgeCount;
+	}
+
+	/**
+	 * Allocates a new node, growing the arrays if needed.
+	 * 		Nodes of a graph have no siblings.
+	 * 
+	 * @return the index of the new node
+	 */
+	int newNode() {
+		if (size == masks.length) {
+			masks    = Arrays.copyOf(masks, size * 2);
+			children = Arrays.copyOf(children, size * 2);
+		}
+		return size++;
+	}
+
+	/**
+	 * Closes the open nodes deeper than the given level, from the deepest
+	 * 		up, replacing each by its registered equivalent if there is one,
+	 * 		and storing the result as a child of the open node above.
+	 * 
+	 * @param level - the length of the prefix whose nodes remain open
+	 */
+	private void close(int level) {
+		for(; depth > level; depth--) {
+			int index = indexOf(previous.charAt(depth - 1));
+			open[depth - 1][index] = freeze(depth);
+		}
+	}
+
+	/**
+	 * Finds or creates the node equivalent to the open node at
+	 * 		the given level, whose children are all closed already.
+	 * 
+	 * @param level - the level of the open node
+	 * 
+	 * @return the index of the equivalent node in this graph
+	 */
+	private int freeze(int level) {
+		int   mask      = openMasks[level];
+		int[] signature = new int[1 + Integer.bitCount(mask & LETTERS)];
+		int   count     = 0;
+
+		signature[count++] = mask;
+		for(int bits = mask & LETTERS; bits != 0; bits &= bits - 1) {
+			signature[count++] = open[level][Integer.numberOfTrailingZeros(bits)];
+		}
+
+		State   state = new State(signature);
+		Integer node  = register.get(state);
+		if (node == null) {
+			node = newNode();
+			masks[node]    = mask;
+			children[node] = edgeCount;
+			for(int position = 1; position < signature.length; position++) {
+				addEdge(signature[position]);
+			}
+			register.put(state, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Appends a child reference to the <i>edges</i> array,
+	 * 		growing it if needed.
+	 * 
+	 * @param node - the child node
+	 */
+	private void addEdge(int node) {
+		if (edgeCount == edges.length) {
+			edges = Arrays.copyOf(edges, edgeCount * 2);
+		}
+		edges[edgeCount++] = node;
+	}
+
+	/**
+	 * The key of a closed node in the register of the graph:
+	 * 		its mask followed by the indices of its children.
+	 * 		Two nodes with the same key are equivalent.
+	 */
+	private static class State {
+		final int[] signature;
+		final int   hash;
+
+		/**
+		 * Creates a key out of a node's signature.
+		 * 
+		 * @param signature - the mask and children of a node
+		 */
+		State(int[] signature) {
+			this.signature = signature;
+			this.hash      = Arrays.hashCode(signature);
+		}
+
+		/**
+		 * @Override
+		 * hashCode() method for State
+		 * 
+		 * @return the hashcode of the signature
+		 */
+		public int hashCode() {
+			return hash;
+		}
+
+		/**
+		 * @Override
+		 * equals() method for State<br>
+		 * Keys are equal if their signatures are.
+		 * 
+		 * @param obj - an Object type to be compared to this key
+		 * 
+		 * @return a boolean value, representing if the passed Object
+		 * 			is equal to this instance
+		 */
+		public boolean equals(Object obj) {
+			return obj instanceof State
+				&& Arrays.equals(signature, ((State) obj).signature);
+		}
+	}
+}
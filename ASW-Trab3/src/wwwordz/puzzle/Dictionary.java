@@ -1,11 +1,15 @@
 package wwwordz.puzzle;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-import java.text.Normalizer;
-import java.text.Normalizer.Form;
+import java.util.stream.Collectors;
 
 
 /**
@@ -18,15 +22,32 @@ import java.text.Normalizer.Form;
  * 		It is backed by a Trie to index words and speedup searches."<br><br>
  *
  * In this case, the Trie instance is not private, since it became useful
- * 		in class Generator of this package.
+ * 		in class Generator of this package.<br><br>
+ * 
+ * The Trie may be built in one of the available modes (see Mode), which
+ * 		must be chosen with setMode() before the first call to getInstance()
+ * 		(or to preload()). The time taken by each step of the loading
+ * 		is kept, to be checked with the designated getters.
  * 
  * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/puzzle/Dictionary.html
  */
 public class Dictionary {
 	private final static int WORD_MIN_LIM = 3,
-			 				 WORD_MAX_LIM = 16;
-	private static Dictionary dictionary = null;
+			 				 WORD_MAX_LIM = 16,
+			 				 LARGE_WORD_MIN_LIM = 8;
+	private final static Pattern WORD_STOP  = Pattern.compile("/|\\s"),
+								 VALID_WORD = Pattern.compile("[a-zA-Z]{" 
+										 					+ WORD_MIN_LIM + "," 
+										 					+ WORD_MAX_LIM + "}");
+	private static volatile Mode    mode     = Mode.TRIE;
+	private static volatile File    image    = null;
+	private static volatile boolean parallel = false;
 	Trie trie;
+	private long loadTime;
+	private long parseTime;
+	private long buildTime;
+	private volatile WordIndex index;
+	private volatile LetterFrequencies frequencies;
 	
 	/**
 	 * Creates (the only) instance of Dictionary 
@@ -41,10 +62,32 @@ public class Dictionary {
 	 * 		such as hyphens, are also rejected.<br>
 	 * 
 	 * All of this Dictionary's words are stored in full upper case notation.
+	 * 		In mode DAWG they are also sorted before being stored.<br>
+	 * 
+	 * In mode IMAGE the file is not parsed at all: the image file
+	 * 		is mapped into memory instead. If there is no image yet,
+	 * 		or it cannot be mapped (which is reported),
+	 * 		the file is parsed as in mode DAWG and the image is written,
+	 * 		so that it can be mapped the next time.<br>
+	 * 
+	 * The file may be parsed in parallel (see setParallel()). The words
+	 * 		are always put in the Trie by this thread, in the same order.
 	 * 
 	 */
 	private Dictionary() {
 		final String  DIC_FILE = "wwwordz/puzzle/pt-PT-AO.dic";
+		long start = System.nanoTime();
+		
+		if (mode == Mode.IMAGE && getImage().exists()) {
+			try {
+				trie      = MappedTrie.map(getImage());
+				buildTime = System.nanoTime() - start;
+				loadTime  = buildTime;
+				return;
+			} catch (IOException cause) {
+				cause.printStackTrace();
+			}
+		}
 		
 		try (
 		InputStream in = ClassLoader.getSystemResourceAsStream(DIC_FILE);
@@ -52,45 +95,201 @@ public class Dictionary {
 										new InputStreamReader(in,"UTF-8"));
 		) { 
             String line, dicword;
-            Pattern wordstop = Pattern.compile("/|\\s"),
-                    validword = Pattern.compile("[a-zA-Z]{" 
-                    									+ WORD_MIN_LIM + "," 
-                    									+ WORD_MAX_LIM + "}");
-            Matcher wordmatcher;
+            List<String> words = new ArrayList<String>();
 
-            trie = new Trie();
             line = reader.readLine();
 
-            while ((line = reader.readLine()) != null) {
-                dicword = wordstop.split(line)[0];
-                wordmatcher = validword.matcher(dicword);
+            if (parallel) {
+                List<String> lines = new ArrayList<String>();
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+                words = lines.parallelStream()
+                             .map(Dictionary::parse)
+                             .filter(Objects::nonNull)
+                             .collect(Collectors.toList());
+            } else {
+                while ((line = reader.readLine()) != null) {
+                    dicword = parse(line);
 
-                if ( wordmatcher.matches() ) 
-                {
-                    Normalizer.normalize(dicword.toUpperCase(Locale.ENGLISH),
-                                          Form.NFD).
-                           replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+                    if (dicword != null) {
+                        words.add(dicword);
+                    }
+                }
+            }
+            parseTime = System.nanoTime() - start;
 
-                    trie.put(dicword.toUpperCase(Locale.ENGLISH));
+            if (mode == Mode.TRIE) {
+                trie = new Trie();
+            } else {
+                String[] sorted = words.toArray(new String[words.size()]);
+                if (parallel) {
+                    Arrays.parallelSort(sorted);
+                } else {
+                    Arrays.sort(sorted);
                 }
+                words = Arrays.asList(sorted);
+                trie  = new Dawg();
+            }
+            for(String word: words) {
+                trie.put(word);
+            }
+            trie.pack();
+            buildTime = System.nanoTime() - start - parseTime;
+
+            if (mode == Mode.IMAGE) {
+                MappedTrie.write(trie, getImage());
             }
         } 
         catch (IOException cause) {
             cause.printStackTrace();;
         } 
+        loadTime = System.nanoTime() - start;
     }
 	
+	/**
+	 * Extracts the word of a line of the dictionary file, if it is valid.
+	 * 		It can be called concurrently, for different lines.
+	 * 
+	 * @param line - a line of the dictionary file
+	 * 
+	 * @return the word of the line in upper case, or null if it 
+	 * 			is not valid
+	 */
+	private static String parse(String line) {
+		String dicword = WORD_STOP.split(line)[0];
+
+		if (VALID_WORD.matcher(dicword).matches()) {
+			return dicword.toUpperCase(Locale.ENGLISH);
+		} else {
+			return null;
+		}
+	}
+	
 	/**
 	 * Retrieves the sole instance of this class,
-	 * 		also creating it if there isn't one yet.
+	 * 		also creating it if there isn't one yet.<br>
+	 * The instance is created by the class loader, when class Holder
+	 * 		is first used, so it is created only once and never seen
+	 * 		half-built, even when several threads ask for it at once.
 	 * 
 	 * @return the single instance of Dictionary
 	 */
 	public static Dictionary getInstance() {
-		if (dictionary == null) {
-				dictionary = new Dictionary();
+		return Holder.dictionary;
+	}
+
+	/**
+	 * Starts creating the sole instance of this class in a background
+	 * 		thread, so that it is ready (or almost) when first needed,
+	 * 		instead of being created by the first caller of getInstance().
+	 * 
+	 */
+	public static void preload() {
+		ForkJoinPool.commonPool().execute(Dictionary::getInstance);
+	}
+
+	/**
+	 * Checks if the file is parsed in parallel.
+	 * 
+	 * @return a boolean value, true if the file is parsed in parallel
+	 */
+	public static boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Chooses between parsing the file sequentially, while reading it,
+	 * 		or in parallel, after reading it, splitting its lines in chunks
+	 * 		that are parsed in the common ForkJoinPool (words keep 
+	 * 		the order of the file). It has no effect once the instance
+	 * 		is created.
+	 * 
+	 * @param parallel - true to parse the file in parallel
+	 */
+	public static void setParallel(boolean parallel) {
+		Dictionary.parallel = parallel;
+	}
+
+	/**
+	 * Retrieves the time taken to create this instance.
+	 * 
+	 * @return the time taken to load the dictionary, in nanoseconds
+	 */
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+	/**
+	 * Retrieves the time taken to read and parse the dictionary file,
+	 * 		which is 0 if an image was mapped instead.
+	 * 
+	 * @return the time taken to parse the file, in nanoseconds
+	 */
+	public long getParseTime() {
+		return parseTime;
+	}
+
+	/**
+	 * Retrieves the time taken to build (or map) the Trie.
+	 * 
+	 * @return the time taken to build the Trie, in nanoseconds
+	 */
+	public long getBuildTime() {
+		return buildTime;
+	}
+
+	/**
+	 * Retrieves the number of nodes of the Trie.
+	 * 
+	 * @return the number of nodes of the Trie
+	 */
+	public int getNodeCount() {
+		return trie.size();
+	}
+
+	/**
+	 * Retrieves the mode in which the Trie is, or will be, built.
+	 * 
+	 * @return the current Mode
+	 */
+	public static Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Changes the mode in which the Trie will be built.
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param mode - the new Mode
+	 */
+	public static void setMode(Mode mode) {
+		Dictionary.mode = mode;
+	}
+
+	/**
+	 * Retrieves the location of the image file used in mode IMAGE.
+	 * 		By default, it is file "pt-PT-AO.dawg" in the working directory.
+	 * 
+	 * @return an "abstract" file with the location of the image
+	 */
+	public static File getImage() {
+		if (image == null) {
+			image = new File(System.getProperty("user.dir"), "pt-PT-AO.dawg");
 		}
-		return dictionary;
+		return image;
+	}
+
+	/**
+	 * Changes the location of the image file used in mode IMAGE.
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param image - an "abstract" file with the new location of the image
+	 * 
+	 * @see wwwordz.puzzle.MappedTrie
+	 */
+	public static void setImage(File image) {
+		Dictionary.image = image;
 	}
 
 	/**
@@ -105,14 +304,160 @@ public class Dictionary {
 	}
 
 	/**
-	 * Uses the internal Trie instance to retrieve
-	 * 		a random large word.
+	 * Creates and returns a Trie.Cursor instance, at the root.
 	 * 
-	 * @return a word from the Dictionary's Trie
+	 * @return a Trie.Cursor instance
 	 * 
-	 * @see wwwordz.puzzle.Trie.getRandomLargeWord()
+	 * @see wwwordz.puzzle.Trie.startCursor()
+	 */
+	public Trie.Cursor startCursor() {
+		return trie.startCursor();
+	}
+
+	/**
+	 * Retrieves a uniformly random large word, i.e. a word 
+	 * 		with at least 8 letters.
+	 * 
+	 * @return a large word from the Dictionary
+	 * 
+	 * @see wwwordz.puzzle.Dictionary.getRandomWord(int, int)
 	 */
 	public String getRandomLargeWord() {
-		return trie.getRandomLargeWord();
+		return getRandomWord(LARGE_WORD_MIN_LIM, WORD_MAX_LIM);
+	}
+
+	/**
+	 * Retrieves a random large word, i.e. a word with at least
+	 * 		8 letters, drawn with the given generator.
+	 * 
+	 * @param random - the generator of the random choice
+	 * 
+	 * @return a large word from the Dictionary
+	 */
+	public String getRandomLargeWord(SplittableRandom random) {
+		return getRandomWord(LARGE_WORD_MIN_LIM, WORD_MAX_LIM, random);
+	}
+
+	/**
+	 * Retrieves a uniformly random word whose length is within
+	 * 		the given range, in constant time.<br>
+	 * The words are drawn from an index of the words by length,
+	 * 		created from the Trie on the first call.
+	 * 
+	 * @param minLength - the minimum length of the word
+	 * @param maxLength - the maximum length of the word
+	 * 
+	 * @return a word from the Dictionary, or null if it has no words
+	 * 			within the range
+	 */
+	public String getRandomWord(int minLength, int maxLength) {
+		return getIndex().random(minLength, maxLength);
+	}
+
+	/**
+	 * Retrieves a random word whose length is within the given range,
+	 * 		drawn with the given generator, so that the same seed always
+	 * 		gives the same word.
+	 * 
+	 * @param minLength - the minimum length of the word
+	 * @param maxLength - the maximum length of the word
+	 * @param random - the generator of the random choice
+	 * 
+	 * @return a word from the Dictionary, or null if it has no words
+	 * 			within the range
+	 */
+	public String getRandomWord(int minLength, int maxLength,
+								SplittableRandom random) {
+		return getIndex().random(minLength, maxLength, random);
+	}
+
+	/**
+	 * Retrieves the index of words by length, creating it if
+	 * 		there isn't one yet.
+	 * 
+	 * @return the index of the words of the Trie
+	 */
+	private WordIndex getIndex() {
+		WordIndex current = index;
+		if (current == null) {
+			synchronized (this) {
+				current = index;
+				if (current == null) {
+					current = index = new WordIndex(trie, WORD_MAX_LIM);
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Retrieves a random letter, drawn with the frequency it has
+	 * 		in the words of the Dictionary.<br>
+	 * The letters are drawn, in constant time, from the frequencies
+	 * 		of letters and bigrams, counted on the first call.
+	 * 
+	 * @param random - the generator of the random choice
+	 * 
+	 * @return an uppercase letter
+	 */
+	public char getRandomLetter(SplittableRandom random) {
+		return getFrequencies().letter(random);
+	}
+
+	/**
+	 * Retrieves a random letter to be placed next to another,
+	 * 		drawn with the frequency it has next to that letter
+	 * 		(before or after it) in the words of the Dictionary.
+	 * 
+	 * @param neighbor - the letter next to the one drawn
+	 * @param random - the generator of the random choice
+	 * 
+	 * @return an uppercase letter
+	 */
+	public char getRandomLetter(char neighbor, SplittableRandom random) {
+		return getFrequencies().letter(neighbor, random);
+	}
+
+	/**
+	 * Retrieves the frequencies of letters and bigrams, counting them
+	 * 		if they weren't yet.
+	 * 
+	 * @return the letter frequencies of the words of the Trie
+	 */
+	private LetterFrequencies getFrequencies() {
+		LetterFrequencies current = frequencies;
+		if (current == null) {
+			synchronized (this) {
+				current = frequencies;
+				if (current == null) {
+					current = frequencies = new LetterFrequencies(trie);
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * The ways the Dictionary can store its words.
+	 * <ul>
+	 *  <li> <b>TRIE</b> - a plain Trie, one node per prefix</li>
+	 *  <li> <b>DAWG</b> - a Dawg, where words also share the nodes
+	 *  		of common suffixes, using much less memory</li>
+	 *  <li> <b>IMAGE</b> - a MappedTrie, searched in place in a precompiled
+	 *  		image file, which makes loading almost instantaneous</li>
+	 * </ul>
+	 */
+	public static enum Mode {
+		TRIE,
+		DAWG,
+		IMAGE;
+	}
+
+	/**
+	 * Holds the sole instance of Dictionary, created when this class
+	 * 		is initialized, i.e. on the first call to getInstance().
+	 */
+	private static class Holder {
+		static final Dictionary dictionary = new Dictionary();
 	}
-}
+}
\ No newline at end of file
@@ -1,33 +1,71 @@
 package wwwordz.puzzle;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.Set;
-import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import wwwordz.shared.*;
-import wwwordz.shared.Puzzle.Solution;
-import wwwordz.shared.Table.Cell;
 
 /**
  * "A puzzle generator. Creates a puzzle with many 
- *  scrambled words contained in a dictionary."<br>
+ *  scrambled words contained in a dictionary."<br><br>
+ * 
+ * A Generator keeps no state of its own: everything a generation
+ * 		needs is kept in local variables. A single instance can
+ * 		therefore be shared by any number of threads generating
+ * 		puzzles at the same time.<br><br>
+ * 
+ * Every random choice of a generation is made by a SplittableRandom
+ * 		created from a seed, which is kept in the generated Puzzle.
+ * 		Generating with the same seed (and the same dictionary) always
+ * 		gives the same puzzle, so a puzzle can be identified, cached
+ * 		or shared by its seed alone.<br><br>
+ * 
+ * A Generator creates tables of a single size, 4x4 by default;
+ * 		a seed gives the same puzzle only with the same size.
  *
  * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/puzzle/Generator.html
  */
 public class Generator {
-	private static final int CHAR_INDEX_MAX  = 26,
-			  		  		 MATRIX_SIZE 	 = 4;
-	private List<Table.Cell> selectedCells;
-	private StringBuilder    word;
+	private static final int CHAR_INDEX_MAX  = 26;
+	private final int size;
 
 	/**
-	 * Currently empty constructor.
+	 * Creates a generator of tables of the default size (4x4).
 	 * 
 	 */
-	public Generator() { }
+	public Generator() {
+		this(Table.DEFAULT_SIZE);
+	}
+
+	/**
+	 * Creates a generator of tables of the given size.
+	 * 
+	 * @param size - the number of rows (and columns) of the tables
+	 * 
+	 * @throws IllegalArgumentException - if the size is not between
+	 * 		1 and Table.MAX_SIZE
+	 */
+	public Generator(int size) {
+		if (size < 1 || size > Table.MAX_SIZE) {
+			throw new IllegalArgumentException("Invalid table size: " + size);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Retrieves the size of the tables created by this generator.
+	 * 
+	 * @return the number of rows (and columns) of the tables
+	 */
+	public int getSize() {
+		return size;
+	}
 	
 	/**
 	 * Generates a Puzzle object of high quality, 
@@ -36,17 +74,95 @@ public class Generator {
 	 * @return a Puzzle instance of high quality
 	 */
 	public Puzzle generate() {
+		return generate(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Generates a Puzzle object of high quality, as generate() does,
+	 * 		from the given seed.
+	 * 
+	 * @param seed - the seed of the random choices
+	 * 
+	 * @return the Puzzle instance of the seed
+	 */
+	public Puzzle generate(long seed) {
 		Puzzle puzzle = new Puzzle();
-		Table table = new Table();
+		Table table = new Table(size);
 		
-		highQualityTable(table);
+		highQualityTable(table, new SplittableRandom(seed));
 		
+		puzzle.setSeed(seed);
 		puzzle.setTable(table);
 		puzzle.setSolutions(getSolutions(table));
 		
 		return puzzle;
 	}
 	
+	/**
+	 * Generates candidate puzzles, as generate() does, in parallel, until
+	 * 		one meets the given profile or the deadline is reached,
+	 * 		and returns the best of them.<br>
+	 * 
+	 * The caller and the other threads of the common ForkJoinPool
+	 * 		generate and solve candidates at the same time. Candidates
+	 * 		that meet the profile are better than those that don't,
+	 * 		and otherwise the one whose solutions are worth more points
+	 * 		is better. At least one candidate is generated, even if
+	 * 		the deadline is already over.
+	 * 
+	 * @param profile - the Profile that a puzzle should meet
+	 * @param deadline - the time available, in milliseconds
+	 * 
+	 * @return the best Puzzle instance generated
+	 */
+	public Puzzle generate(Profile profile, long deadline) {
+		return generate(profile, deadline, false);
+	}
+
+	/**
+	 * Generates candidate puzzles, as generate(Profile, long) does,
+	 * 		with weighted() instead of generate() if asked to.
+	 * 
+	 * @param profile - the Profile that a puzzle should meet
+	 * @param deadline - the time available, in milliseconds
+	 * @param weighted - true to generate the candidates with weighted()
+	 * 
+	 * @return the best Puzzle instance generated
+	 */
+	public Puzzle generate(Profile profile, long deadline, boolean weighted) {
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline);
+		AtomicReference<Candidate> best = new AtomicReference<Candidate>();
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		
+		for(int k = 1; k < ForkJoinPool.getCommonPoolParallelism(); k++) {
+			tasks.add(ForkJoinPool.commonPool()
+								  .submit(() -> search(profile, end, best, weighted)));
+		}
+		search(profile, end, best, weighted);
+		for(ForkJoinTask<?> task: tasks) {
+			task.join();
+		}
+		return best.get().puzzle;
+	}
+	
+	/**
+	 * Generates candidate puzzles, keeping the best one found by any 
+	 * 		thread, until one meets the profile or the deadline is reached.
+	 * 
+	 * @param profile - the Profile that a puzzle should meet
+	 * @param end - the deadline, as a value of System.nanoTime()
+	 * @param best - the best candidate found so far, shared by all threads
+	 * @param weighted - true to generate the candidates with weighted()
+	 */
+	private void search(Profile profile, long end, 
+						AtomicReference<Candidate> best, boolean weighted) {
+		do {
+			Candidate candidate = new Candidate(weighted ? weighted() : generate(),
+												profile);
+			best.accumulateAndGet(candidate, Candidate::best);
+		} while (!best.get().met && System.nanoTime() - end < 0);
+	}
+	
 	/**
 	 * Generates a random Puzzle instance,
 	 * 		whose table's cells have completely random characters,
@@ -55,11 +171,24 @@ public class Generator {
 	 * @return a completely random Puzzle instance 
 	 */
 	public Puzzle random() {
+		return random(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Generates a random Puzzle instance, as random() does,
+	 * 		from the given seed.
+	 * 
+	 * @param seed - the seed of the random choices
+	 * 
+	 * @return the completely random Puzzle instance of the seed
+	 */
+	public Puzzle random(long seed) {
 		Puzzle puzzle = new Puzzle();
-		Table table = new Table();
+		Table table = new Table(size);
 		
-		randomizeLetters(table);
+		randomizeLetters(table, new SplittableRandom(seed));
 	
+		puzzle.setSeed(seed);
 		puzzle.setTable(table);
 		puzzle.setSolutions(getSolutions(table));
 
@@ -67,123 +196,54 @@ public class Generator {
 	}
 	
 	/**
-	 * Obtains all the solutions of a table and returns
-	 * 		a list with no repeated solutions.<br>
-	 * 
-	 * It iterates over every cell of the table, 
-	 * 		creating an instance of Trie.Search and then recursively
-	 * 		doing the same for adjacent cells (a.k.a. its neighbors),
-	 * 		as in a Breadth First Search.
+	 * Generates a Puzzle instance whose table's cells have random
+	 * 		characters, drawn with the frequencies of letters and bigrams
+	 * 		of the words of the Dictionary, rather than uniformly,
+	 * 		so that its letters are likely to form many words.
 	 * 
-	 * @param table - the Table instance to search solutions in
+	 * @return a weighted random Puzzle instance
 	 * 
-	 * @return a list of unique solutions to the given Table
+	 * @see wwwordz.puzzle.Dictionary.getRandomLetter(char, SplittableRandom)
 	 */
-	public List<Puzzle.Solution> getSolutions(Table table) {
-		Table.Cell cell;
-		word							  = new StringBuilder();
-		selectedCells					  = new ArrayList<Table.Cell>();
-		Set<Puzzle.Solution> solutions    = new HashSet<Puzzle.Solution>();
-		
-		
-		for(Iterator<Table.Cell> it = table.iterator(); it.hasNext();) {
-			Trie.Search search	= Dictionary.getInstance().startSearch();
-			cell = it.next();
-			search.continueWith(cell.getLetter());
-			solutions.addAll(checkNeighbors(table,cell,search));
-			word.deleteCharAt(word.length() - 1);
-			selectedCells.remove(selectedCells.size() - 1);
-		}
-		
-		selectedCells = null;
-		word 		  = null;
-		
-		List<Puzzle.Solution> solutionList = new ArrayList<Puzzle.Solution>();
-		
-		for(Puzzle.Solution solution: solutions) {
-			if(!contains(solutionList, solution.getWord())) {
-				solutionList.add(solution);
-			}
-		}
-		
-		return solutionList;
+	public Puzzle weighted() {
+		return weighted(ThreadLocalRandom.current().nextLong());
 	}
-	
+
 	/**
-	 * Checks if a word already belongs to a list of solutions of a Puzzle.
-	 * Required to replace incorrect, strange behavior happening with the 
-	 * 		usage of pre-defined, similar methods.
+	 * Generates a weighted random Puzzle instance, as weighted() does,
+	 * 		from the given seed.
 	 * 
-	 * @param solutions - the list of Puzzle.Solution instances
-	 * @param word - the word whose existence will be verified
+	 * @param seed - the seed of the random choices
 	 * 
-	 * @return a boolean representing if the given word 
-	 * 			is present or not on the list
+	 * @return the weighted random Puzzle instance of the seed
 	 */
-	static private boolean contains(List<Solution> solutions, String word) {
-		for(Solution solution:solutions)
-			if(solution.getWord().equals(word))
-				return true;
-		return false;
+	public Puzzle weighted(long seed) {
+		Puzzle puzzle = new Puzzle();
+		Table table = new Table(size);
+
+		weightLetters(table, new SplittableRandom(seed));
+
+		puzzle.setSeed(seed);
+		puzzle.setTable(table);
+		puzzle.setSolutions(getSolutions(table));
+
+		return puzzle;
 	}
-	
+
 	/**
-	 * Searches for empty, non-selected, adjacent cells of a given cell
-	 * 		of a table. It also passes a Trie.Search object that's used
-	 * 		to check if the current node is a word, in which case it will
-	 * 		add it to the Set of solutions 
-	 * 		that the method returns in the end.<br><br>
-	 * 
-	 * It uses the class fields <i>word</i>, a StringBuilder instance that
-	 * 		keeps updating according to current state of the search
-	 * 		through the Trie, and the <i>selectedCells</i> List of cells
-	 * 		that are already being "used" in a word, thus preventing the
-	 * 		search to check the same cell twice without backtracking.<br><br>
+	 * Obtains all the solutions of a table and returns
+	 * 		a list with no repeated solutions.<br>
 	 * 
-	 * Although a Set is being used, its property of unique instances is not
-	 * 		being used because it was not performing correctly, even with
-	 * 		the proper, overriden <i>equals()</i> method of Table.Solution;
-	 * 		however, it was kept to point out such fact (it can be replaced
-	 * 		in a posterior phase).
+	 * The search itself is done by a Solver, over the Dictionary's Trie.
 	 * 
 	 * @param table - the Table instance to search solutions in
-	 * @param cell - the current Table.Cell instance where the search is at
-	 * @param currentsearch - the Trie.Search object associated with a node
-	 * 						  in the Dictionary's Trie where the search is at
 	 * 
-	 * @return a Set of solutions (may contain repeated solutions)
+	 * @return a list of unique solutions to the given Table
+	 * 
+	 * @see wwwordz.puzzle.Solver.solve(Table)
 	 */
-	private Set<Puzzle.Solution> checkNeighbors(Table table,
-												Table.Cell cell,
-												Trie.Search currentsearch) 
-	{
-		Set<Puzzle.Solution> solutions = new HashSet<Puzzle.Solution>();
-		List<Cell> neighbors = table.getNeighbors(cell);
-		
-		word.append(cell.getLetter());
-		selectedCells.add(cell);
-		
-		if(currentsearch.isWord()) {
-			solutions.add(new Puzzle.Solution(word.toString(),
-											  new ArrayList<Table.Cell>
-					  						  (selectedCells)));
-		}
-		
-		
-		
-		for(Table.Cell neighbor: neighbors) {
-			Trie.Search search = Dictionary.getInstance().trie
-								 .new Search(currentsearch);
-
-			if(!selectedCells.contains(neighbor) 
-			&& search.continueWith(neighbor.getLetter())) {
-				solutions.addAll(checkNeighbors(table, neighbor, search));
-				word.deleteCharAt(word.length() - 1);
-				selectedCells.remove(selectedCells.size() - 1);
-			}
-		}
-
-		return solutions;
+	public List<Puzzle.Solution> getSolutions(Table table) {
+		return new Solver(Dictionary.getInstance().trie).solve(table);
 	}
 	
 	/**
@@ -194,49 +254,69 @@ public class Generator {
 	 *		and will stop when the Table object 
 	 *		has its cells completely filled.<br><br>
 	 *
-	 * Uses the class field <i>selectedCells</i> to mark which cells
-	 * 		were already filled, or, in other, which are not empty.
-	 * 		It was previously used to mark only cells used in a word,
-	 * 		so that the process would use not only empty cells, but also
-	 * 		unused cells with the same character. This proved useless,
-	 * 		therefore that feature has been removed.
+	 * Uses the mask <i>empty</i>, with a bit per cell index, to mark
+	 * 		which cells were not yet filled, and the Table's neighbor masks
+	 * 		to check if a cell still has empty neighbors, so that
+	 * 		no lists of cells are created. It was previously used to mark
+	 * 		only cells used in a word, so that the process would use not only
+	 * 		empty cells, but also unused cells with the same character.
+	 * 		This proved useless, therefore that feature has been removed.
 	 * 
 	 * @param table -  the Table instance to change
+	 * @param random - the generator of the random choices
 	 */
-	private void highQualityTable(Table table) {
-		List<Cell> neighbors;
-		List<Cell> empty = new ArrayList<Table.Cell>();
-		selectedCells    = new ArrayList<Table.Cell>();
-		Random random    = new Random();
-		Table.Cell cell  = table.getCell(random.nextInt(MATRIX_SIZE)+1,
-										 random.nextInt(MATRIX_SIZE)+1);
+	private void highQualityTable(Table table, SplittableRandom random) {
+		long empty = 0;
+		int  cell  = random.nextInt(table.getSize()) * table.getSize()
+				   + random.nextInt(table.getSize());
 
-		empty.addAll(table.getEmptyCells());
+		for(int index = 0; index < table.getCellCount(); index++) {
+			if (table.isEmpty(index)) {
+				empty |= 1L << index;
+			}
+		}
 		
-		while(empty.size() != 0) {
-			String largeWord = Dictionary.getInstance().getRandomLargeWord();
+		while(empty != 0) {
+			int left = Long.bitCount(empty);
+			String largeWord = Dictionary.getInstance().getRandomWord(
+									Math.min(8, left), left, random);
+			if (largeWord == null) {
+				largeWord = Dictionary.getInstance().getRandomLargeWord(random);
+			}
 			
 			for(int k = 0; k < largeWord.length(); k++) {
-				selectedCells.add(cell);
-				empty.remove(cell);
-				cell.setLetter(largeWord.charAt(k));
-				
-				neighbors = table.getNeighbors(cell);
+				int current = cell;
+				empty &= ~(1L << current);
+				table.setLetter(current, largeWord.charAt(k));
 				
-				if(!selectedCells.containsAll(neighbors)) { 
-					while(!empty.contains(cell)) {
-						cell = neighbors.get(random.nextInt(neighbors.size()));
+				if((table.getNeighborMask(current) & empty) != 0) {
+					while((empty & 1L << cell) == 0) {
+						cell = table.getNeighbor(current,
+									random.nextInt(table.getNeighborCount(current)));
 					}
 				} else {
-					while(!empty.contains(cell) && empty.size() != 0) {
-						cell = empty.get(random.nextInt(empty.size()));
+					while((empty & 1L << cell) == 0 && empty != 0) {
+						cell = nth(empty, random.nextInt(Long.bitCount(empty)));
 					}
 					break;
 				}
 			}
 		}
-		
-		selectedCells = null;
+	}
+
+	/**
+	 * Finds the n-th cell of a set of cells, in the order of their indices.
+	 * 
+	 * @param cells - the mask of a set of cells
+	 * @param n - the position of the cell in the set, from 0
+	 * 
+	 * @return the index of the cell
+	 */
+	private static int nth(long cells, int n) {
+		for(int k = 0; k < n; k++) {
+			cells &= cells - 1;
+		}
+		return Long.numberOfTrailingZeros(cells);
 	}
 	
 	/**
@@ -244,17 +324,154 @@ public class Generator {
 	 * 		 of a given Table instance.
 	 * 
 	 * @param table - the Table instance to change
+	 * @param random - the generator of the random choices
 	 */
-	private void randomizeLetters(Table table) {
-		Random random = new Random();
+	private void randomizeLetters(Table table, SplittableRandom random) {
 		char randomletter;
 		
-		for(int i = 1; i <= MATRIX_SIZE; i++) {
-			for(int j = 1; j <= MATRIX_SIZE; j++) {
-				if (table.getCell(i,j).isEmpty()) {
-					randomletter = (char) ((int)'A' + random.nextInt(CHAR_INDEX_MAX));
-					table.setLetter(i,  j, randomletter);
+		for(int index = 0; index < table.getCellCount(); index++) {
+			if (table.isEmpty(index)) {
+				randomletter = (char) ((int)'A' + random.nextInt(CHAR_INDEX_MAX));
+				table.setLetter(index, randomletter);
+			}
+		}
+	}
+
+	/**
+	 * Fills every empty cell of a given Table instance with a letter
+	 * 		drawn next to one of its neighbors already filled, chosen at
+	 * 		random (or on its own, if there is none), row by row.
+	 * 
+	 * @param table - the Table instance to change
+	 * @param random - the generator of the random choices
+	 */
+	private void weightLetters(Table table, SplittableRandom random) {
+		Dictionary dictionary = Dictionary.getInstance();
+
+		for(int index = 0; index < table.getCellCount(); index++) {
+			if (table.isEmpty(index)) {
+				int filled = 0;
+				for(int k = 0; k < table.getNeighborCount(index); k++) {
+					if (!table.isEmpty(table.getNeighbor(index, k))) {
+						filled++;
+					}
 				}
+				if (filled == 0) {
+					table.setLetter(index, dictionary.getRandomLetter(random));
+				} else {
+					int chosen = random.nextInt(filled);
+					for(int k = 0; ; k++) {
+						int neighbor = table.getNeighbor(index, k);
+						if (!table.isEmpty(neighbor) && chosen-- == 0) {
+							table.setLetter(index, dictionary.getRandomLetter(
+												table.getLetter(neighbor), random));
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The qualities required of a generated puzzle: a minimum number
+	 * 		of solutions and a minimum length for the longest of them.
+	 */
+	public static class Profile {
+		/**
+		 * At least 40 solutions, one of them with 8 or more letters.
+		 */
+		public static final Profile DEFAULT = new Profile(40, 8);
+		private final int minSolutions;
+		private final int minLongestWord;
+		
+		/**
+		 * Creates a Profile instance.
+		 * 
+		 * @param minSolutions - the minimum number of solutions
+		 * @param minLongestWord - the minimum length of the longest solution
+		 */
+		public Profile(int minSolutions, int minLongestWord) {
+			this.minSolutions   = minSolutions;
+			this.minLongestWord = minLongestWord;
+		}
+		
+		/**
+		 * Retrieves the minimum number of solutions.
+		 * 
+		 * @return the minimum number of solutions
+		 */
+		public int getMinSolutions() {
+			return minSolutions;
+		}
+		
+		/**
+		 * Retrieves the minimum length of the longest solution.
+		 * 
+		 * @return the minimum length of the longest solution
+		 */
+		public int getMinLongestWord() {
+			return minLongestWord;
+		}
+		
+		/**
+		 * Checks if a list of solutions meets this profile.
+		 * 
+		 * @param solutions - the solutions of a puzzle
+		 * 
+		 * @return a boolean value, true if the solutions meet this profile
+		 */
+		public boolean isMetBy(List<Puzzle.Solution> solutions) {
+			int longest = 0;
+			for(Puzzle.Solution solution: solutions) {
+				longest = Math.max(longest, solution.getWord().length());
+			}
+			return solutions.size() >= minSolutions && longest >= minLongestWord;
+		}
+	}
+	
+	/**
+	 * A generated puzzle, together with its score: whether it meets 
+	 * 		a profile and the total points of its solutions.
+	 */
+	private static class Candidate {
+		final Puzzle  puzzle;
+		final boolean met;
+		final int     points;
+		
+		/**
+		 * Scores a puzzle against a profile.
+		 * 
+		 * @param puzzle - the generated puzzle
+		 * @param profile - the Profile it should meet
+		 */
+		Candidate(Puzzle puzzle, Profile profile) {
+			int points = 0;
+			for(Puzzle.Solution solution: puzzle.getSolutions()) {
+				points += solution.getPoints();
+			}
+			this.puzzle = puzzle;
+			this.met    = profile.isMetBy(puzzle.getSolutions());
+			this.points = points;
+		}
+		
+		/**
+		 * Chooses the better of two candidates, any of which may be null.
+		 * 
+		 * @param one - a Candidate instance
+		 * @param other - another Candidate instance
+		 * 
+		 * @return the better candidate (the first, if they are as good)
+		 */
+		static Candidate best(Candidate one, Candidate other) {
+			if (one == null) {
+				return other;
+			} else if (other == null) {
+				return one;
+			} else if (one.met != other.met) {
+				return one.met ? one : other;
+			} else {
+				return other.points > one.points ? other : one;
 			}
 		}
 	}
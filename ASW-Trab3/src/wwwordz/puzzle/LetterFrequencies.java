@@ -0,0 +1,153 @@
+package wwwordz.puzzle;
+
+import java.util.SplittableRandom;
+
+/**
+ * The frequencies of the letters of the words of a Trie, and of pairs of
+ * 		consecutive letters (bigrams), to draw letters that are likely
+ * 		to form words.<br><br>
+ * 
+ * Bigrams are counted in both directions, since a word can be read
+ * 		in any direction on a table: the frequency of a letter next to
+ * 		another is that of both the bigram and its reverse.<br><br>
+ * 
+ * Each distribution is kept as an alias table (Walker's method), so that
+ * 		a letter is drawn in constant time, with one random int and one
+ * 		random double, whatever the distribution.
+ */
+class LetterFrequencies {
+	private final Alias   letters;
+	private final Alias[] neighbors;
+
+	/**
+	 * Counts the letters and bigrams of all words of a Trie.
+	 * 
+	 * @param trie - the Trie whose words are counted
+	 */
+	LetterFrequencies(Trie trie) {
+		long[]   single = new long[Trie.ALPHABET];
+		long[][] pairs  = new long[Trie.ALPHABET][Trie.ALPHABET];
+
+		for(String word: trie) {
+			int previous = -1;
+			for(int k = 0; k < word.length(); k++) {
+				int index = Trie.indexOf(word.charAt(k));
+				single[index]++;
+				if (previous >= 0) {
+					pairs[previous][index]++;
+					pairs[index][previous]++;
+				}
+				previous = index;
+			}
+		}
+
+		letters   = new Alias(single);
+		neighbors = new Alias[Trie.ALPHABET];
+		for(int index = 0; index < Trie.ALPHABET; index++) {
+			long total = 0;
+			for(long count: pairs[index]) {
+				total += count;
+			}
+			neighbors[index] = total == 0 ? letters : new Alias(pairs[index]);
+		}
+	}
+
+	/**
+	 * Draws a letter, with the frequency it has in the words.
+	 * 
+	 * @param random - the generator of the random choice
+	 * 
+	 * @return an uppercase letter
+	 */
+	char letter(SplittableRandom random) {
+		return (char) ('A' + letters.draw(random));
+	}
+
+	/**
+	 * Draws a letter to be next to another, with the frequency it has
+	 * 		next to that letter in the words.
+	 * 
+	 * @param neighbor - the letter next to the one drawn
+	 * @param random - the generator of the random choice
+	 * 
+	 * @return an uppercase letter
+	 */
+	char letter(char neighbor, SplittableRandom random) {
+		int index = Trie.indexOf(neighbor);
+		if (index < 0) {
+			return letter(random);
+		}
+		return (char) ('A' + neighbors[index].draw(random));
+	}
+
+	/**
+	 * An alias table of a discrete distribution: each of the <i>n</i>
+	 * 		columns has the probability of keeping its own value,
+	 * 		and an alias, the value drawn otherwise.
+	 */
+	private static class Alias {
+		final double[] probability;
+		final int[]    alias;
+
+		/**
+		 * Creates the alias table of the distribution with the given
+		 * 		weights, with Vose's algorithm.
+		 * 
+		 * @param weights - the weight of each value (not all zero)
+		 */
+		Alias(long[] weights) {
+			int      n      = weights.length;
+			double[] scaled = new double[n];
+			int[]    small  = new int[n],
+					 large  = new int[n];
+			int      smalls = 0,
+					 larges = 0;
+			long     total  = 0;
+
+			probability = new double[n];
+			alias       = new int[n];
+			for(long weight: weights) {
+				total += weight;
+			}
+			for(int k = 0; k < n; k++) {
+				scaled[k] = (double) weights[k] * n / total;
+				if (scaled[k] < 1.0) {
+					small[smalls++] = k;
+				} else {
+					large[larges++] = k;
+				}
+			}
+			while (smalls > 0 && larges > 0) {
+				int less = small[--smalls],
+					more = large[--larges];
+
+				probability[less] = scaled[less];
+				alias[less]       = more;
+				scaled[more]     += scaled[less] - 1.0;
+				if (scaled[more] < 1.0) {
+					small[smalls++] = more;
+				} else {
+					large[larges++] = more;
+				}
+			}
+			while (larges > 0) {
+				probability[large[--larges]] = 1.0;
+			}
+			while (smalls > 0) {
+				probability[small[--smalls]] = 1.0;
+			}
+		}
+
+		/**
+		 * Draws a value with the distribution of this table.
+		 * 
+		 * @param random - the generator of the random choice
+		 * 
+		 * @return the value drawn, from 0 to n - 1
+		 */
+		int draw(SplittableRandom random) {
+			int column = random.nextInt(probability.length);
+			return random.nextDouble() < probability[column] ? column : alias[column];
+		}
+	}
+}
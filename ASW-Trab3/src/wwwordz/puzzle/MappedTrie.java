@@ -0,0 +1,248 @@
+package wwwordz.puzzle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A Trie that is searched in place, in a binary image memory-mapped
+ * 		from a file, without creating any object per node.<br><br>
+ * 
+ * The image is a sequence of big-endian integers. It starts with
+ * 		a header (MAGIC, VERSION, number of nodes, number of words and
+ * 		number of integers in the nodes section), followed by the nodes.
+ * 		Each node is its mask (as in any other Trie) followed by the
+ * 		positions of its children, in alphabetical order, so the child
+ * 		for a letter is found with a single bit count.
+ * 		A node's index is its position in the nodes section,
+ * 		and the root is at position 0.<br><br>
+ * 
+ * Images are compiled offline, from any Trie (a Dawg gives the smallest
+ * 		images), with write() or by running this class:
+ * 		<pre>java wwwordz.puzzle.MappedTrie image-file [TRIE|DAWG]</pre>
+ * 		and loaded with map(). Mapped tries cannot be changed.
+ */
+public class MappedTrie extends Trie {
+	static final int MAGIC   = 0x57575A54,
+					 VERSION = 1,
+					 HEADER  = 5;
+	private final IntBuffer nodes;
+	private final int       words;
+
+	/**
+	 * Creates an instance over the nodes section of an image.
+	 * 
+	 * @param nodes - the buffer with the nodes, root at position 0
+	 * @param size - the number of nodes
+	 * @param words - the number of words
+	 */
+	private MappedTrie(IntBuffer nodes, int size, int words) {
+		super(1);
+		this.masks    = null;
+		this.children = null;
+		this.siblings = null;
+		this.nodes    = nodes;
+		this.size     = size;
+		this.words    = words;
+	}
+
+	/**
+	 * Maps an image file into memory and creates a Trie over it.
+	 * 		The file is no longer needed open once mapped.
+	 * 
+	 * @param file - the image file, created by write()
+	 * 
+	 * @return a Trie searched in place in the mapped file
+	 * 
+	 * @throws IOException - if the file cannot be read or is not
+	 * 		an image of a compatible version
+	 */
+	public static MappedTrie map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+											StandardOpenOption.READ)) {
+			IntBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+										   0, channel.size()).asIntBuffer();
+
+			if (buffer.limit() < HEADER
+			|| buffer.get(0) != MAGIC || buffer.get(1) != VERSION
+			|| buffer.get(4) != buffer.limit() - HEADER) {
+				throw new IOException("Not a valid trie image: " + file);
+			}
+			int size  = buffer.get(2),
+				words = buffer.get(3);
+
+			buffer.position(HEADER);
+			return new MappedTrie(buffer.slice(), size, words);
+		}
+	}
+
+	/**
+	 * Writes the image of a Trie (or Dawg) to a file.
+	 * 		Nodes shared by several parents are written only once.
+	 * 
+	 * @param trie - the Trie to write, already packed
+	 * @param file - the file to write to, replaced if it exists
+	 * 
+	 * @throws IOException - if the file cannot be written
+	 */
+	public static void write(Trie trie, File file) throws IOException {
+		int[] order    = new int[trie.size()],
+			  position = new int[trie.size()],
+			  stack    = new int[trie.size()];
+		int   count    = 0,
+			  length   = 0,
+			  top      = 0;
+
+		for(int node = 0; node < position.length; node++) {
+			position[node] = -1;
+		}
+		stack[top++] = ROOT;
+		while(top > 0) {
+			int node = stack[--top];
+			order[count++] = node;
+			position[node] = length;
+			length += 1 + Integer.bitCount(trie.mask(node) & LETTERS);
+
+			for(int index = ALPHABET - 1; index >= 0; index--) {
+				int child = trie.child(node, index);
+				if (child != 0 && position[child] == -1) {
+					position[child] = 0;
+					stack[top++]    = child;
+				}
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(count);
+			out.writeInt(trie.count(ROOT));
+			out.writeInt(length);
+
+			for(int rank = 0; rank < count; rank++) {
+				int node = order[rank],
+					mask = trie.mask(node) & ~PACKED;
+				out.writeInt(mask);
+				for(int bits = mask & LETTERS; bits != 0; bits &= bits - 1) {
+					int index = Integer.numberOfTrailingZeros(bits);
+					out.writeInt(position[trie.child(node, index)]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mapped tries cannot be changed.
+	 * 
+	 * @param word - ignored
+	 * 
+	 * @throws UnsupportedOperationException - always
+	 */
+	public void put(String word) {
+		throw new UnsupportedOperationException("Mapped tries cannot be changed");
+	}
+
+	/**
+	 * Images are packed already, so this does nothing.
+	 * 
+	 */
+	public void pack() { }
+
+	/**
+	 * Retrieves the number of words in the image.
+	 * 
+	 * @return the number of words of this Trie
+	 */
+	public int words() {
+		return words;
+	}
+
+	/**
+	 * Retrieves the child of a node through a given letter,
+	 * 		reading it from the image.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position of the letter in the alphabet
+	 * 
+	 * @return the child node, or 0 if there is none
+	 */
+	int child(int node, int index) {
+		int mask = nodes.get(node),
+			bit  = 1 << index;
+		if ((mask & bit) == 0) {
+			return 0;
+		}
+		return nodes.get(node + 1 + Integer.bitCount(mask & (bit - 1)));
+	}
+
+	/**
+	 * Retrieves the number of positions of the nodes section,
+	 * 		which are the possible node indices.
+	 * 
+	 * @return one more than the largest node index
+	 */
+	int capacity() {
+		return nodes.limit();
+	}
+
+	/**
+	 * Retrieves the position in the image of the edge from a node
+	 * 		to one of its children.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position in the alphabet of the child's letter
+	 * 
+	 * @return the position of the edge
+	 */
+	int edge(int node, int index) {
+		return node + 1 + Integer.bitCount(nodes.get(node) & ((1 << index) - 1));
+	}
+
+	/**
+	 * Retrieves the number of positions of the nodes section,
+	 * 		where the edges are.
+	 * 
+	 * @return the number of positions of the nodes section
+	 */
+	int edgeCapacity() {
+		return nodes.limit();
+	}
+
+	/**
+	 * Retrieves the mask of a node from the image.
+	 * 
+	 * @param node - the node to inspect
+	 * 
+	 * @return the mask of the node
+	 */
+	int mask(int node) {
+		return nodes.get(node);
+	}
+
+	/**
+	 * Compiles the dictionary into an image file.
+	 * 
+	 * @param args - the image file, optionally followed by the Dictionary
+	 * 		mode to build it with (DAWG by default)
+	 * 
+	 * @throws IOException - if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: java wwwordz.puzzle.MappedTrie"
+							 + " image-file [TRIE|DAWG]");
+			System.exit(1);
+		}
+		Dictionary.setMode(args.length > 1 ? Dictionary.Mode.valueOf(args[1])
+										   : Dictionary.Mode.DAWG);
+		File file = new File(args[0]);
+		write(Dictionary.getInstance().trie, file);
+		System.out.println("Wrote " + file + " (" + file.length() + " bytes)");
+	}
+}
@@ -0,0 +1,429 @@
+package wwwordz.puzzle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import wwwordz.shared.Puzzle;
+import wwwordz.shared.Table;
+
+/**
+ * A library of puzzles generated and solved offline, kept in
+ * 		a binary file that is memory-mapped, so that taking a puzzle
+ * 		is only decoding a few hundred bytes.<br><br>
+ * 
+ * The file is a sequence of big-endian values. It starts with
+ * 		a header (MAGIC, VERSION, the number of puzzles and the index
+ * 		of the first puzzle of each Difficulty, plus the number of puzzles
+ * 		again), followed by the position of each puzzle in the file,
+ * 		and then the puzzles themselves, grouped by difficulty.
+ * 		Each puzzle is its seed (a long), the size of its table (a byte),
+ * 		its letters (a byte each, row by row), the number of solutions
+ * 		(a short) and the path of each solution: its length (a byte)
+ * 		followed by its cells, numbered as in Solver, two per byte,
+ * 		the first in the lowest bits, or a byte each in tables larger
+ * 		than 4x4. The words are not kept, since they are read off the table.
+ * 		The whole file must be smaller than 2GB.<br><br>
+ * 
+ * Libraries are built offline with write() or by running this class:
+ * 		<pre>java wwwordz.puzzle.PuzzleLibrary library-file count [first-seed [size]]</pre>
+ * 		and loaded with map(). A library can be read by several threads.
+ */
+public class PuzzleLibrary {
+	static final int MAGIC   = 0x5757504C,
+					 VERSION = 2;
+	private static final int BATCH = 1 << 12;
+	private final ByteBuffer buffer;
+	private final int        count;
+	private final int[]      starts;
+
+	/**
+	 * Creates an instance over a mapped file.
+	 * 
+	 * @param buffer - the contents of the file
+	 * @param count - the number of puzzles
+	 * @param starts - the index of the first puzzle of each difficulty,
+	 * 		followed by the number of puzzles
+	 */
+	private PuzzleLibrary(ByteBuffer buffer, int count, int[] starts) {
+		this.buffer = buffer;
+		this.count  = count;
+		this.starts = starts;
+	}
+
+	/**
+	 * Maps a library file into memory.
+	 * 		The file is no longer needed open once mapped.
+	 * 
+	 * @param file - the library file, created by write()
+	 * 
+	 * @return the library in the file
+	 * 
+	 * @throws IOException - if the file cannot be read, is not
+	 * 		a library of a compatible version, or has no puzzles
+	 */
+	public static PuzzleLibrary map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+											StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Puzzle library too large: " + file);
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+											0, channel.size());
+			int   buckets = Difficulty.values().length;
+			int[] starts  = new int[buckets + 1];
+
+			if (buffer.limit() < 4 * (3 + starts.length)
+			|| buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a valid puzzle library: " + file);
+			}
+			int count = buffer.getInt(8);
+			for(int bucket = 0; bucket < starts.length; bucket++) {
+				starts[bucket] = buffer.getInt(12 + 4 * bucket);
+			}
+			if (starts[buckets] != count) {
+				throw new IOException("Not a valid puzzle library: " + file);
+			}
+			if (count == 0) {
+				throw new IOException("Empty puzzle library: " + file);
+			}
+			return new PuzzleLibrary(buffer, count, starts);
+		}
+	}
+
+	/**
+	 * Generates puzzles from consecutive seeds and writes them,
+	 * 		solved, to a library file. Puzzles are generated in parallel,
+	 * 		a batch at a time, and kept in a temporary file per difficulty
+	 * 		until all are generated.
+	 * 
+	 * @param file - the file to write to, replaced if it exists
+	 * @param generator - the Generator of the puzzles
+	 * @param first - the seed of the first puzzle
+	 * @param count - the number of puzzles
+	 * 
+	 * @throws IOException - if the files cannot be written,
+	 * 		or the library would be larger than 2GB
+	 */
+	public static void write(File file, Generator generator, long first, int count)
+	throws IOException {
+		Difficulty[]       difficulties = Difficulty.values();
+		File[]             parts   = new File[difficulties.length];
+		DataOutputStream[] outs    = new DataOutputStream[difficulties.length];
+		int[][]            lengths = new int[difficulties.length][];
+		int[]              sizes   = new int[difficulties.length];
+
+		try {
+			for(int bucket = 0; bucket < parts.length; bucket++) {
+				parts[bucket]   = File.createTempFile("puzzles", ".part");
+				outs[bucket]    = new DataOutputStream(new BufferedOutputStream(
+										new FileOutputStream(parts[bucket])));
+				lengths[bucket] = new int[BATCH];
+			}
+			for(long start = 0; start < count; start += BATCH) {
+				List<Puzzle> batch = LongStream.range(start, Math.min(start + BATCH, count))
+											   .parallel()
+											   .mapToObj(k -> generator.generate(first + k))
+											   .collect(Collectors.toList());
+				for(Puzzle puzzle: batch) {
+					int bucket = Difficulty.of(puzzle).ordinal();
+					int before = outs[bucket].size();
+
+					writePuzzle(outs[bucket], puzzle);
+					if (sizes[bucket] == lengths[bucket].length) {
+						lengths[bucket] = Arrays.copyOf(lengths[bucket],
+														sizes[bucket] * 2);
+					}
+					lengths[bucket][sizes[bucket]++] = outs[bucket].size() - before;
+				}
+			}
+			for(DataOutputStream out: outs) {
+				out.close();
+			}
+
+			long position = 4L * (3 + difficulties.length + 1 + count);
+			try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(file)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(count);
+				int index = 0;
+				for(int bucket = 0; bucket < sizes.length; bucket++) {
+					out.writeInt(index);
+					index += sizes[bucket];
+				}
+				out.writeInt(count);
+
+				for(int bucket = 0; bucket < sizes.length; bucket++) {
+					for(int k = 0; k < sizes[bucket]; k++) {
+						if (position > Integer.MAX_VALUE) {
+							throw new IOException("Puzzle library too large: " + file);
+						}
+						out.writeInt((int) position);
+						position += lengths[bucket][k];
+					}
+				}
+				for(File part: parts) {
+					Files.copy(part.toPath(), out);
+				}
+			}
+		} finally {
+			for(int bucket = 0; bucket < parts.length; bucket++) {
+				if (outs[bucket] != null) {
+					outs[bucket].close();
+				}
+				if (parts[bucket] != null) {
+					parts[bucket].delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a puzzle in the format of the library.
+	 * 
+	 * @param out - the stream to write to
+	 * @param puzzle - the solved Puzzle to write
+	 * 
+	 * @throws IOException - if the stream cannot be written
+	 */
+	private static void writePuzzle(DataOutputStream out, Puzzle puzzle)
+	throws IOException {
+		Table table = puzzle.getTable();
+		int   size  = table.getSize();
+
+		out.writeLong(puzzle.getSeed());
+		out.writeByte(size);
+		for(int cell = 0; cell < table.getCellCount(); cell++) {
+			out.writeByte(table.getLetter(cell));
+		}
+		out.writeShort(puzzle.getSolutions().size());
+		for(Puzzle.Solution solution: puzzle.getSolutions()) {
+			int  length = solution.getLength();
+			long path   = solution.getPath();
+			int  high   = solution.getHighPath();
+
+			if (!solution.isPacked()) {
+				List<Table.Cell> list = solution.getCells();
+				for(int k = 0; k < length; k++) {
+					int cell = table.indexOf(list.get(k));
+					path |= (long) (cell & 0xF) << 4 * k;
+					high |= (cell >>> 4) << 2 * k;
+				}
+			}
+			out.writeByte(length);
+			if (size <= Table.DEFAULT_SIZE) {
+				for(int k = 0; k < length; k += 2) {
+					out.writeByte((int) (path >>> 4 * k) & 0xFF);
+				}
+			} else {
+				for(int k = 0; k < length; k++) {
+					out.writeByte((int) (path >>> 4 * k) & 0xF
+								| (high >>> 2 * k & 0x3) << 4);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the number of puzzles in this library.
+	 * 
+	 * @return the number of puzzles
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Retrieves the number of puzzles of a difficulty in this library.
+	 * 
+	 * @param difficulty - the Difficulty of the puzzles
+	 * 
+	 * @return the number of puzzles of that difficulty
+	 */
+	public int size(Difficulty difficulty) {
+		return starts[difficulty.ordinal() + 1] - starts[difficulty.ordinal()];
+	}
+
+	/**
+	 * Reads a puzzle of this library.
+	 * 
+	 * @param index - the index of the puzzle, from 0 to size() - 1
+	 * 
+	 * @return the solved Puzzle
+	 * 
+	 * @throws IndexOutOfBoundsException - if there is no such puzzle
+	 */
+	public Puzzle get(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("No puzzle " + index);
+		}
+		int    position = buffer.getInt(4 * (3 + starts.length + index));
+		long   seed     = buffer.getLong(position);
+		int    size     = buffer.get(position + 8);
+		char[] letters  = new char[size * size];
+		String[] rows   = new String[size];
+
+		position += 9;
+		for(int cell = 0; cell < letters.length; cell++) {
+			letters[cell] = (char) buffer.get(position++);
+		}
+		for(int row = 0; row < size; row++) {
+			rows[row] = new String(letters, row * size, size);
+		}
+		Table table = new Table(rows);
+		int   total = buffer.getShort(position) & 0xFFFF;
+		List<Puzzle.Solution> solutions = new ArrayList<Puzzle.Solution>(total);
+
+		position += 2;
+		for(int k = 0; k < total; k++) {
+			int  length = buffer.get(position++);
+			long path   = 0;
+			int  high   = 0;
+
+			if (size <= Table.DEFAULT_SIZE) {
+				for(int pair = 0; pair < (length + 1) / 2; pair++) {
+					path |= (buffer.get(position++) & 0xFFL) << 8 * pair;
+				}
+			} else {
+				for(int step = 0; step < length; step++) {
+					int cell = buffer.get(position++);
+					path |= (long) (cell & 0xF) << 4 * step;
+					high |= (cell >>> 4 & 0x3) << 2 * step;
+				}
+			}
+			solutions.add(new Puzzle.Solution(table, path, high, length));
+		}
+
+		Puzzle puzzle = new Puzzle();
+		puzzle.setSeed(seed);
+		puzzle.setTable(table);
+		puzzle.setSolutions(solutions);
+		return puzzle;
+	}
+
+	/**
+	 * Reads a puzzle of a difficulty of this library.
+	 * 
+	 * @param difficulty - the Difficulty of the puzzle
+	 * @param index - the index of the puzzle among those of the difficulty
+	 * 
+	 * @return the solved Puzzle
+	 * 
+	 * @throws IndexOutOfBoundsException - if there is no such puzzle
+	 */
+	public Puzzle get(Difficulty difficulty, int index) {
+		if (index < 0 || index >= size(difficulty)) {
+			throw new IndexOutOfBoundsException("No " + difficulty + " puzzle " + index);
+		}
+		return get(starts[difficulty.ordinal()] + index);
+	}
+
+	/**
+	 * Reads a random puzzle of this library.
+	 * 
+	 * @return a solved Puzzle
+	 */
+	public Puzzle random() {
+		return get(ThreadLocalRandom.current().nextInt(count));
+	}
+
+	/**
+	 * Reads a random puzzle of a difficulty of this library.
+	 * 
+	 * @param difficulty - the Difficulty of the puzzle
+	 * 
+	 * @return a solved Puzzle, or null if there is none of that difficulty
+	 */
+	public Puzzle random(Difficulty difficulty) {
+		int size = size(difficulty);
+		if (size == 0) {
+			return null;
+		}
+		return get(difficulty, ThreadLocalRandom.current().nextInt(size));
+	}
+
+	/**
+	 * Generates and writes a library file.
+	 * 
+	 * @param args - the library file, the number of puzzles and,
+	 * 		optionally, the seed of the first puzzle (0 by default)
+	 * 		and the size of the tables (4 by default)
+	 * 
+	 * @throws IOException - if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java wwwordz.puzzle.PuzzleLibrary"
+							 + " library-file count [first-seed [size]]");
+			System.exit(1);
+		}
+		File file  = new File(args[0]);
+		int  count = Integer.parseInt(args[1]);
+		long first = args.length > 2 ? Long.parseLong(args[2]) : 0;
+		int  size  = args.length > 3 ? Integer.parseInt(args[3]) : Table.DEFAULT_SIZE;
+
+		write(file, new Generator(size), first, count);
+		PuzzleLibrary library = map(file);
+		System.out.print("Wrote " + file + " (" + file.length() + " bytes):");
+		for(Difficulty difficulty: Difficulty.values()) {
+			System.out.print(" " + difficulty + "=" + library.size(difficulty));
+		}
+		System.out.println();
+	}
+
+	/**
+	 * The difficulty of a puzzle, by its number of solutions:
+	 * 		the fewer words a table has, the harder it is to find them.
+	 * <ul>
+	 *  <li> <b>EASY</b> - 80 solutions or more</li>
+	 *  <li> <b>MEDIUM</b> - 40 to 79 solutions</li>
+	 *  <li> <b>HARD</b> - less than 40 solutions</li>
+	 * </ul>
+	 */
+	public static enum Difficulty {
+		EASY(80),
+		MEDIUM(40),
+		HARD(0);
+
+		private final int minSolutions;
+
+		/**
+		 * Creates a difficulty.
+		 * 
+		 * @param minSolutions - the minimum number of solutions
+		 */
+		Difficulty(int minSolutions) {
+			this.minSolutions = minSolutions;
+		}
+
+		/**
+		 * Finds the difficulty of a solved puzzle.
+		 * 
+		 * @param puzzle - the Puzzle to classify
+		 * 
+		 * @return the Difficulty of the puzzle
+		 */
+		public static Difficulty of(Puzzle puzzle) {
+			int solutions = puzzle.getSolutions().size();
+			for(Difficulty difficulty: values()) {
+				if (solutions >= difficulty.minSolutions) {
+					return difficulty;
+				}
+			}
+			return HARD;
+		}
+	}
+}
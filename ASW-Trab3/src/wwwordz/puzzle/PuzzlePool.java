@@ -0,0 +1,292 @@
+package wwwordz.puzzle;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import wwwordz.shared.Puzzle;
+import wwwordz.shared.Table;
+
+/**
+ * A bounded pool of puzzles, generated and solved in advance by
+ * 		a background thread, so that taking a puzzle is (almost always)
+ * 		immediate. This class is a singleton, like Dictionary.<br><br>
+ * 
+ * The background thread generates puzzles while the pool is not full,
+ * 		and waits for room otherwise. If the pool is empty when a puzzle
+ * 		is taken, it is generated by the caller instead (a miss).<br><br>
+ * 
+ * Puzzles are generated to meet a Generator.Profile, within a deadline
+ * 		(by default, Profile.DEFAULT and 100 milliseconds), with
+ * 		Generator.generate() or, if the pool is set to, with
+ * 		Generator.weighted().<br><br>
+ * 
+ * The pool keeps some metrics, to help choosing its capacity for
+ * 		the cadence of the rounds: the number of puzzles taken from it
+ * 		(hits) and generated by the caller (misses), and the number of
+ * 		puzzles generated by the background thread and the time it took.
+ */
+public class PuzzlePool {
+	private static final int DEFAULT_CAPACITY = 4;
+	private static final long DEFAULT_DEADLINE = 100;
+	private static volatile int capacity = DEFAULT_CAPACITY;
+	private static volatile int size = Table.DEFAULT_SIZE;
+	private static volatile Generator.Profile profile = Generator.Profile.DEFAULT;
+	private static volatile long deadline = DEFAULT_DEADLINE;
+	private static volatile boolean weighted = false;
+	private final BlockingQueue<Puzzle> puzzles;
+	private final Generator             generator;
+	private final Thread                worker;
+	private final AtomicLong hits          = new AtomicLong(),
+							 misses        = new AtomicLong(),
+							 refills       = new AtomicLong(),
+							 refillTime    = new AtomicLong(),
+							 maxRefillTime = new AtomicLong();
+
+	/**
+	 * Creates a pool with the given capacity and starts filling it
+	 * 		in the background.
+	 * 
+	 * @param generator - the Generator of the puzzles
+	 * @param capacity - the maximum number of puzzles kept ready
+	 */
+	public PuzzlePool(Generator generator, int capacity) {
+		this.puzzles   = new ArrayBlockingQueue<Puzzle>(Math.max(capacity, 1));
+		this.generator = generator;
+		this.worker    = new Thread(this::refill, "PuzzlePool");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Retrieves the sole instance of this class,
+	 * 		also creating it if there isn't one yet.
+	 * 
+	 * @return the single instance of PuzzlePool
+	 */
+	public static PuzzlePool getInstance() {
+		return Holder.pool;
+	}
+
+	/**
+	 * Retrieves the capacity of the sole instance.
+	 * 
+	 * @return the maximum number of puzzles kept ready
+	 */
+	public static int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Changes the capacity of the sole instance.
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param capacity - the maximum number of puzzles kept ready
+	 */
+	public static void setCapacity(int capacity) {
+		PuzzlePool.capacity = capacity;
+	}
+
+	/**
+	 * Retrieves the size of the tables of the sole instance.
+	 * 
+	 * @return the number of rows (and columns) of the tables
+	 */
+	public static int getSize() {
+		return size;
+	}
+
+	/**
+	 * Changes the size of the tables of the sole instance.
+	 * 		It has no effect once the instance is created.
+	 * 
+	 * @param size - the number of rows (and columns) of the tables
+	 */
+	public static void setSize(int size) {
+		PuzzlePool.size = size;
+	}
+
+	/**
+	 * Retrieves the profile that generated puzzles should meet.
+	 * 
+	 * @return the current Generator.Profile, or null if any puzzle will do
+	 */
+	public static Generator.Profile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Changes the profile that generated puzzles should meet, 
+	 * 		and the time available to generate each puzzle.
+	 * 
+	 * @param profile - the new Generator.Profile, or null if any puzzle will do
+	 * @param deadline - the time available, in milliseconds
+	 * 
+	 * @see wwwordz.puzzle.Generator.generate(Generator.Profile, long)
+	 */
+	public static void setProfile(Generator.Profile profile, long deadline) {
+		PuzzlePool.profile  = profile;
+		PuzzlePool.deadline = deadline;
+	}
+
+	/**
+	 * Checks if puzzles are generated with weighted random letters.
+	 * 
+	 * @return a boolean value, true if puzzles are generated
+	 * 		with Generator.weighted()
+	 */
+	public static boolean isWeighted() {
+		return weighted;
+	}
+
+	/**
+	 * Changes how puzzles are generated: with Generator.weighted(),
+	 * 		which places letters drawn with their frequency in the words
+	 * 		of the Dictionary, or with Generator.generate(), which places
+	 * 		whole words (the default).
+	 * 
+	 * @param weighted - true to generate puzzles with Generator.weighted()
+	 * 
+	 * @see wwwordz.puzzle.Generator.weighted()
+	 */
+	public static void setWeighted(boolean weighted) {
+		PuzzlePool.weighted = weighted;
+	}
+
+	/**
+	 * Takes a ready puzzle from the pool, or generates one
+	 * 		if there is none.
+	 * 
+	 * @return a solved Puzzle
+	 */
+	public Puzzle take() {
+		Puzzle puzzle = puzzles.poll();
+		if (puzzle != null) {
+			hits.incrementAndGet();
+			return puzzle;
+		} else {
+			misses.incrementAndGet();
+			return generate();
+		}
+	}
+
+	/**
+	 * Generates puzzles, while the pool has room for them,
+	 * 		until the thread is interrupted. A puzzle that fails
+	 * 		to be generated is reported and skipped, so that
+	 * 		the pool keeps being filled.
+	 * 
+	 */
+	private void refill() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				long   start = System.nanoTime();
+				Puzzle puzzle;
+				try {
+					puzzle = generate();
+				} catch (RuntimeException cause) {
+					cause.printStackTrace();
+					continue;
+				}
+				long   time  = System.nanoTime() - start;
+
+				refills.incrementAndGet();
+				refillTime.addAndGet(time);
+				maxRefillTime.accumulateAndGet(time, Math::max);
+				puzzles.put(puzzle);
+			}
+		} catch (InterruptedException cause) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Generates a puzzle, meeting the current profile if there is one,
+	 * 		with weighted random letters if the pool is set to.
+	 * 
+	 * @return a solved Puzzle
+	 */
+	private Puzzle generate() {
+		Generator.Profile target = profile;
+		if (target == null) {
+			return weighted ? generator.weighted() : generator.generate();
+		} else {
+			return generator.generate(target, deadline, weighted);
+		}
+	}
+
+	/**
+	 * Stops the background thread. Puzzles still in the pool
+	 * 		can be taken, and are generated by the caller afterwards.
+	 * 
+	 */
+	public void shutdown() {
+		worker.interrupt();
+	}
+
+	/**
+	 * Retrieves the number of puzzles ready in the pool.
+	 * 
+	 * @return the number of puzzles ready
+	 */
+	public int size() {
+		return puzzles.size();
+	}
+
+	/**
+	 * Retrieves the number of puzzles taken ready from the pool.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Retrieves the number of puzzles generated by the caller of take(),
+	 * 		because the pool was empty.
+	 * 
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Retrieves the number of puzzles generated by the background thread.
+	 * 
+	 * @return the number of refills
+	 */
+	public long getRefills() {
+		return refills.get();
+	}
+
+	/**
+	 * Retrieves the average time taken to generate a puzzle
+	 * 		in the background.
+	 * 
+	 * @return the average time of a refill, in nanoseconds
+	 */
+	public long getAverageRefillTime() {
+		long count = refills.get();
+		return count == 0 ? 0 : refillTime.get() / count;
+	}
+
+	/**
+	 * Retrieves the longest time taken to generate a puzzle
+	 * 		in the background.
+	 * 
+	 * @return the maximum time of a refill, in nanoseconds
+	 */
+	public long getMaxRefillTime() {
+		return maxRefillTime.get();
+	}
+
+	/**
+	 * Holds the sole instance of PuzzlePool, created when this class
+	 * 		is initialized, i.e. on the first call to getInstance().
+	 */
+	private static class Holder {
+		static final PuzzlePool pool = new PuzzlePool(new Generator(size), capacity);
+	}
+}
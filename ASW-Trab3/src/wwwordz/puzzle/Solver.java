@@ -0,0 +1,207 @@
+package wwwordz.puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import wwwordz.shared.Puzzle;
+import wwwordz.shared.Table;
+
+/**
+ * Finds all the solutions of a table, i.e. the words of a Trie that
+ * 		can be formed by paths of neighboring cells,
+ * 		each cell used at most once per word.<br><br>
+ * 
+ * The cells of the table are numbered row by row, from 0 to size * size - 1,
+ * 		and a set of cells is a long with a bit per cell (tables are at most
+ * 		8x8, see Table.MAX_SIZE). The cells visited by the current path are
+ * 		one such mask, and the neighbors of each cell are another, kept
+ * 		by Table for each size (see Table.getNeighborMask()), so choosing
+ * 		the next cells to visit takes a few bit operations. The Trie
+ * 		is walked through node indices, without cursor objects,
+ * 		and each path found is packed as in
+ * 		Puzzle.Solution: the lowest 4 bits of each cell in a long,
+ * 		and the highest 2 bits in an int.<br><br>
+ * 
+ * A path is never longer than the longest word of the Trie
+ * 		(Trie.MAX_DEPTH), and the search only goes on while its prefix
+ * 		is in the Trie, so the time to solve a larger table grows with
+ * 		its number of cells and the words it has, not with its paths.<br><br>
+ * 
+ * Repeated words are discarded as soon as they are found. Along with
+ * 		the node, the search keeps the rank of the path's prefix among
+ * 		the words of the Trie (see Trie.rank()), which for a word is
+ * 		a number that identifies it, and the words found are marked
+ * 		in a bit set indexed by that number. Since cells and their
+ * 		neighbors are visited in increasing order, the path kept for
+ * 		each word is the first in that order.<br><br>
+ * 
+ * Solution objects are created only at the end, one per word,
+ * 		packed: the path itself is all they keep. A Solver keeps no state
+ * 		between calls, so it can be shared by several threads
+ * 		(each thread has its own bit set, cleared after each call).
+ */
+public class Solver {
+	private static final ThreadLocal<long[]> FOUND = new ThreadLocal<long[]>();
+	private final Trie trie;
+
+	/**
+	 * Creates a solver for the words of a Trie.
+	 * 
+	 * @param trie - the Trie with the valid words, already packed
+	 */
+	public Solver(Trie trie) {
+		this.trie = trie;
+	}
+
+	/**
+	 * Obtains all the solutions of a table, with no repeated words.
+	 * 
+	 * @param table - the Table instance to search solutions in
+	 * 
+	 * @return a list of unique solutions to the given Table
+	 */
+	public List<Puzzle.Solution> solve(Table table) {
+		int[] letters = new int[table.getCellCount()];
+		Paths paths   = new Paths(found(), Math.min(letters.length, Trie.MAX_DEPTH));
+
+		for(int cell = 0; cell < letters.length; cell++) {
+			letters[cell] = Trie.indexOf(table.getLetter(cell));
+		}
+		for(int cell = 0; cell < letters.length; cell++) {
+			if (letters[cell] >= 0) {
+				int node = trie.child(Trie.ROOT, letters[cell]);
+				if (node != 0) {
+					visit(table, letters, paths, cell, node,
+						  trie.rank(Trie.ROOT, letters[cell]),
+						  1L << cell, cell & 0xF, cell >>> 4, 1);
+				}
+			}
+		}
+		return paths.toSolutions(table);
+	}
+
+	/**
+	 * Retrieves the bit set of the words found by this thread, with room
+	 * 		for all words of the Trie, and all bits clear.
+	 * 
+	 * @return a bit set with one bit per word
+	 */
+	private long[] found() {
+		long[] found = FOUND.get();
+		int    words = trie.count(Trie.ROOT);
+		if (found == null || found.length * 64L < words) {
+			found = new long[(words + 63) / 64];
+			FOUND.set(found);
+		}
+		return found;
+	}
+
+	/**
+	 * Visits a cell, at the end of a path whose prefix is in the Trie,
+	 * 		keeping the path if it is a word and visiting every neighbor
+	 * 		not yet in the path whose letter continues the prefix.
+	 * 
+	 * @param table - the Table instance searched
+	 * @param letters - the index of the letter of each cell (-1 if empty)
+	 * @param paths - where the paths of words are kept
+	 * @param cell - the cell visited
+	 * @param node - the node of the Trie for the path up to this cell
+	 * @param rank - the rank of the path among the words of the Trie
+	 * @param visited - the mask of the cells in the path
+	 * @param path - the lowest 4 bits of the cells of the path, the first lowest
+	 * @param high - the highest 2 bits of the cells of the path, the first lowest
+	 * @param length - the number of cells in the path
+	 */
+	private void visit(Table table, int[] letters, Paths paths, int cell,
+					   int node, int rank, long visited, long path, int high,
+					   int length) {
+		if ((trie.mask(node) & Trie.WORD) != 0) {
+			paths.add(path, high, length, rank);
+		}
+		if (length == paths.longest) {
+			return;
+		}
+		for(long next = table.getNeighborMask(cell) & ~visited; next != 0; next &= next - 1) {
+			int neighbor = Long.numberOfTrailingZeros(next);
+			if (letters[neighbor] >= 0) {
+				int child = trie.child(node, letters[neighbor]);
+				if (child != 0) {
+					visit(table, letters, paths, neighbor, child,
+						  rank + trie.rank(node, letters[neighbor]),
+						  visited | 1L << neighbor,
+						  path | (long) (neighbor & 0xF) << 4 * length,
+						  high | (neighbor >>> 4) << 2 * length, length + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The paths of the words found in a table, in the order found,
+	 * 		kept in a growing array of longs, the lowest bits of the path's
+	 * 		cells in one and their highest bits, length and word number
+	 * 		in the next, together with the bit set of the words found.
+	 */
+	private static class Paths {
+		final long[] found;
+		final int    longest;
+		long[] paths = new long[64];
+		int    count = 0;
+
+		/**
+		 * Creates an empty collection of paths.
+		 * 
+		 * @param found - a bit set, all clear, with a bit per word
+		 * @param longest - the maximum number of cells in a path
+		 */
+		Paths(long[] found, int longest) {
+			this.found   = found;
+			this.longest = longest;
+		}
+
+		/**
+		 * Keeps the path of a word, unless the word was found already.
+		 * 
+		 * @param path - the lowest 4 bits of the cells of the path
+		 * @param high - the highest 2 bits of the cells of the path
+		 * @param length - the number of cells in the path
+		 * @param word - the number of the word
+		 */
+		void add(long path, int high, int length, int word) {
+			long bit = 1L << word;
+			if ((found[word >>> 6] & bit) != 0) {
+				return;
+			}
+			found[word >>> 6] |= bit;
+
+			if (count == paths.length) {
+				paths = Arrays.copyOf(paths, count * 2);
+			}
+			paths[count++] = path;
+			paths[count++] = (long) high << 32 | (long) word << 5 | length;
+		}
+
+		/**
+		 * Creates a Solution for each path kept, clearing the bit set
+		 * 		for the next search.
+		 * 
+		 * @param table - the Table whose cells the paths refer to
+		 * 
+		 * @return a list of solutions with no repeated words
+		 */
+		List<Puzzle.Solution> toSolutions(Table table) {
+			List<Puzzle.Solution> solutions = new ArrayList<Puzzle.Solution>(count / 2);
+
+			for(int position = 0; position < count; position += 2) {
+				int length = (int) paths[position + 1] & 0x1F,
+					word   = (int) paths[position + 1] >>> 5,
+					high   = (int) (paths[position + 1] >>> 32);
+
+				found[word >>> 6] = 0;
+				solutions.add(new Puzzle.Solution(table, paths[position], high, length));
+			}
+			return solutions;
+		}
+	}
+}
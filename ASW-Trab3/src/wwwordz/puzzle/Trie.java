@@ -1,11 +1,16 @@
 package wwwordz.puzzle;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Random;
-import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * "A trie is data structure to store words efficiently using a tree. 
@@ -13,19 +18,57 @@ import java.util.Set;
  * The descendants of a node are indexed by a letter, 
  * representing a possible continuation of that prefix followed by that letter."
  * 
- * This class has a single field, which is the root node of the trie.
+ * Nodes are not objects: each node is an integer index into flat arrays.
+ * 		The <i>masks</i> array keeps, per node, a bit for each letter
+ * 		it has a child for, plus the WORD bit marking nodes that end a word.
+ * 		Children are linked as in a first-child/next-sibling tree,
+ * 		through the <i>children</i> and <i>siblings</i> arrays, 
+ * 		and are kept in alphabetical order, so that the child for a letter
+ * 		is found by skipping as many siblings as there are lower bits
+ * 		set in the parent's mask. 
+ * 		Once all words are put, pack() renumbers the nodes so that
+ * 		the children of each node have consecutive indices, and from then on
+ * 		the child for a letter is found without walking the siblings.
+ * 		Index 0 means "no node", since the root is never a child.<br>
+ * 
+ * Only the letters from 'A' to 'Z' can be stored.
  * 
  * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/puzzle/Trie.html
  */
 public class Trie implements Iterable<String> {
-	Node root;
+	static final int ALPHABET         = 26,
+					 ROOT             = 0,
+					 LETTERS          = (1 << ALPHABET) - 1,
+					 PACKED           = 1 << 30,
+					 WORD             = 1 << 31,
+					 MAX_DEPTH        = 16;
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	int[] masks;
+	int[] children;
+	int[] siblings;
+	int   size;
+	private volatile int[] counts;
+	private volatile int[] ranks;
 
 	/**
 	 * Creates a Trie instance and initializes the root Node
 	 * 
 	 */
     public Trie() {
-        this.root = new Node();
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates a Trie instance with room for the given number of nodes
+     * 		before its arrays have to grow, and initializes the root node.
+     * 
+     * @param capacity - the initial number of nodes
+     */
+    Trie(int capacity) {
+    	this.masks    = new int[Math.max(capacity, 1)];
+    	this.children = new int[Math.max(capacity, 1)];
+    	this.siblings = new int[Math.max(capacity, 1)];
+    	this.size     = 1;
     }
 
     /**
@@ -33,9 +76,37 @@ public class Trie implements Iterable<String> {
      * 		starting from the root.
      * 
      * @param word - the word to put in this Trie
+     * 
+     * @throws IllegalArgumentException - if the word has a character
+     * 		outside the range 'A' to 'Z'
      */
     public void put(String word) {
-        root.put(word, 0);
+        int node = ROOT;
+        for(int position = 0; position < word.length(); position++) {
+        	int index = indexOf(word.charAt(position));
+        	if (index < 0) {
+        		throw new IllegalArgumentException("Invalid letter in " + word);
+        	}
+        	int child = child(node, index);
+        	if (child == 0) {
+        		child = newNode();
+        		link(node, index, child);
+        	}
+        	node = child;
+        }
+        masks[node] |= WORD;
+        counts = null;
+        ranks  = null;
+    }
+
+    /**
+     * Creates a Cursor at the root node of the Trie, to be reused
+     * 		for as many searches as needed.
+     * 
+     * @return a Cursor instance
+     */
+    public Cursor startCursor() {
+        return new Cursor();
     }
 
     /**
@@ -45,7 +116,7 @@ public class Trie implements Iterable<String> {
      * @return a Search instance
      */
     public Search startSearch() {
-        return new Search(root);
+        return new Search(ROOT);
     }
 	
     /**
@@ -56,33 +127,373 @@ public class Trie implements Iterable<String> {
      * @return the full word, collected during the process
      */
 	public String getRandomLargeWord() {
-		Node node = root;
-		Random random = new Random();
+		return randomLargeWord(bound -> ThreadLocalRandom.current().nextInt(bound));
+	}
+
+    /**
+     * Traverses the Trie until it reaches a leaf node, as 
+     * 		getRandomLargeWord() does, selecting nodes with the given
+     * 		generator, so the same seed always gives the same word.
+     * 
+     * @param random - the generator of the random choices
+     * 
+     * @return the full word, collected during the process
+     */
+	public String getRandomLargeWord(SplittableRandom random) {
+		return randomLargeWord(random::nextInt);
+	}
+
+    /**
+     * Traverses the Trie until it reaches a leaf node, selecting
+     * 		each node with the given draw.
+     * 
+     * @param nextInt - draws a number from 0 (inclusive)
+     * 		to its argument (exclusive)
+     * 
+     * @return the full word, collected during the process
+     */
+	private String randomLargeWord(IntUnaryOperator nextInt) {
+		int node = ROOT;
 		StringBuilder word = new StringBuilder();
 		
-		while(!node.children.isEmpty()) {
-			Set<Character> children = node.children.keySet();
-			List<Character> c = new ArrayList<Character>(children);
-			char letter = c.get(random.nextInt(c.size()));
-			word.append(letter);
+		while((mask(node) & LETTERS) != 0) {
+			int children = mask(node) & LETTERS;
+			int skip = nextInt.applyAsInt(Integer.bitCount(children));
 			
-			node = node.children.get(letter);
+			while(skip-- > 0) {
+				children &= children - 1;
+			}
+			int index = Integer.numberOfTrailingZeros(children);
+			word.append((char) ('A' + index));
+
+			node = child(node, index);
 		}
 		
 		return word.toString();
 	}
 
 	/**
-	 * Creates and returns an Iterator for the Trie's nodes.
+	 * Creates and returns an Iterator for the Trie's words,
+	 * 		in alphabetical order.
 	 * 
-	 * @return an Iterator for the Trie's nodes
+	 * @return an Iterator for the Trie's words
 	 * 
 	 * @see wwwordz.puzzle.Trie.NodeIterator
 	 */
 	public Iterator<String> iterator() {
 		return new NodeIterator() ;
 	}
+
+	/**
+	 * Creates and returns a Spliterator for the Trie's words.
+	 * 
+	 * @return a Spliterator for the Trie's words
+	 * 
+	 * @see wwwordz.puzzle.Trie.NodeSpliterator
+	 */
+	public Spliterator<String> spliterator() {
+		return new NodeSpliterator(LETTERS);
+	}
+
+	/**
+	 * Creates a sequential stream of the Trie's words, in alphabetical
+	 * 		order. Call parallel() on it to visit the words in several
+	 * 		threads.
+	 * 
+	 * @return a Stream of the Trie's words
+	 */
+	public Stream<String> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
 	
+	/**
+	 * Renumbers the nodes of this Trie, in depth first order, so that
+	 * 		the children of every node have consecutive indices, 
+	 * 		which makes searches faster and trims the arrays to their size.<br>
+	 * Words can still be put afterwards, but the nodes that get new children
+	 * 		go back to walking their list of siblings.
+	 * 
+	 */
+	public void pack() {
+		int[] order   = new int[size],
+			  renamed = new int[size],
+			  stack   = new int[size];
+		int   count   = 1,
+			  top     = 0;
+
+		stack[top++] = ROOT;
+		while(top > 0) {
+			int node  = stack[--top],
+				first = count;
+			for(int child = children[node]; child != 0; child = siblings[child]) {
+				renamed[child]   = count;
+				order[count++]   = child;
+			}
+			for(int position = count - 1; position >= first; position--) {
+				stack[top++] = order[position];
+			}
+		}
+
+		int[] packedMasks    = new int[count],
+			  packedChildren = new int[count],
+			  packedSiblings = new int[count];
+		for(int node = 0; node < count; node++) {
+			int old = order[node];
+			packedMasks[node]    = masks[old] | PACKED;
+			packedChildren[node] = renamed[children[old]];
+			packedSiblings[node] = renamed[siblings[old]];
+		}
+		masks    = packedMasks;
+		children = packedChildren;
+		siblings = packedSiblings;
+		size     = count;
+		counts   = null;
+		ranks    = null;
+	}
+
+	/**
+	 * Retrieves the number of words below a node, including the node
+	 * 		itself if it ends a word. The counts of all nodes are
+	 * 		computed on the first call, and again after a word is put.
+	 * 
+	 * @param node - the node whose words are counted
+	 * 
+	 * @return the number of words below the node
+	 */
+	int count(int node) {
+		int[] current = counts;
+		if (current == null) {
+			current = new int[capacity()];
+			countWords(ROOT, current);
+			counts  = current;
+		}
+		return current[node] - 1;
+	}
+
+	/**
+	 * Retrieves the rank of a child among the words below its parent,
+	 * 		i.e. the number of words below the parent that come before
+	 * 		every word below the child, in alphabetical order: the parent
+	 * 		itself, if it is a word, and the words below its children
+	 * 		for previous letters.<br>
+	 * Adding up the ranks of the children along the path of a word,
+	 * 		from the root, gives the position of the word among all
+	 * 		words of the Trie, a number that identifies the word even
+	 * 		when its nodes are shared with other words, as in a Dawg.
+	 * 
+	 * The ranks of all edges are computed on the first call, if the edges
+	 * 		have positions (see edge()), and are then just read.
+	 * 		The children of nodes that got new children after the Trie
+	 * 		was packed have no positions, and their ranks are added up
+	 * 		on each call instead.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position in the alphabet of the child's letter
+	 * 
+	 * @return the rank of the child
+	 */
+	int rank(int node, int index) {
+		int edge = edge(node, index);
+		if (edge < 0) {
+			return sumRank(node, index);
+		}
+		int[] current = ranks;
+		if (current == null) {
+			current = new int[edgeCapacity()];
+			for(int parent = 0; parent < capacity(); parent++) {
+				if (parent == ROOT || count(parent) > 0) {
+					int rank = (mask(parent) & WORD) != 0 ? 1 : 0;
+					for(int bits = mask(parent) & LETTERS; bits != 0; bits &= bits - 1) {
+						int letter   = Integer.numberOfTrailingZeros(bits),
+							position = edge(parent, letter);
+						if (position >= 0) {
+							current[position] = rank;
+						}
+						rank += count(child(parent, letter));
+					}
+				}
+			}
+			ranks = current;
+		}
+		return current[edge];
+	}
+
+	/**
+	 * Computes the rank of a child among the words below its parent,
+	 * 		adding up the words below its previous siblings.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position in the alphabet of the child's letter
+	 * 
+	 * @return the rank of the child
+	 */
+	private int sumRank(int node, int index) {
+		int mask = mask(node),
+			rank = (mask & WORD) != 0 ? 1 : 0;
+		for(int bits = mask & LETTERS & ((1 << index) - 1); bits != 0; bits &= bits - 1) {
+			rank += count(child(node, Integer.numberOfTrailingZeros(bits)));
+		}
+		return rank;
+	}
+
+	/**
+	 * Retrieves the position of the edge from a node to one of its
+	 * 		children, if the children of each node are in consecutive
+	 * 		positions of some array, as they are once a Trie is packed.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position in the alphabet of the child's letter
+	 * 
+	 * @return the position of the edge, or -1 if edges have no positions
+	 */
+	int edge(int node, int index) {
+		int mask = masks[node];
+		if ((mask & PACKED) == 0) {
+			return -1;
+		}
+		return children[node] + Integer.bitCount(mask & ((1 << index) - 1));
+	}
+
+	/**
+	 * Retrieves the number of possible edge positions.
+	 * 
+	 * @return one more than the largest edge position
+	 */
+	int edgeCapacity() {
+		return size;
+	}
+
+	/**
+	 * Counts the words below a node, i.e. its paths to nodes
+	 * 		marked as a word, remembering the count of each node
+	 * 		already visited, since a node may have several parents.
+	 * 
+	 * @param node - the node to count the words from
+	 * @param words - the counts known so far, plus one, per node
+	 * 
+	 * @return the number of words below the node
+	 */
+	private int countWords(int node, int[] words) {
+		if (words[node] == 0) {
+			int mask  = mask(node),
+				count = (mask & WORD) != 0 ? 1 : 0;
+			for(int bits = mask & LETTERS; bits != 0; bits &= bits - 1) {
+				count += countWords(child(node, Integer.numberOfTrailingZeros(bits)),
+									words);
+			}
+			words[node] = count + 1;
+		}
+		return words[node] - 1;
+	}
+
+	/**
+	 * Retrieves the number of possible node indices, i.e. the size of
+	 * 		an array indexed by node.
+	 * 
+	 * @return one more than the largest node index
+	 */
+	int capacity() {
+		return size;
+	}
+
+	/**
+	 * Retrieves the number of nodes in use, including the root.
+	 * 
+	 * @return the number of nodes of this Trie
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Converts a letter into its position in the alphabet.
+	 * 
+	 * @param letter - an upper case letter
+	 * 
+	 * @return the position of the letter, from 0 to ALPHABET - 1,
+	 * 			or -1 if the letter cannot be stored in a Trie
+	 */
+	static int indexOf(char letter) {
+		int index = letter - 'A';
+		return index >= 0 && index < ALPHABET ? index : -1;
+	}
+
+	/**
+	 * Retrieves the child of a node through a given letter.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position of the letter in the alphabet
+	 * 
+	 * @return the child node, or 0 if there is none
+	 */
+	int child(int node, int index) {
+		int mask = masks[node],
+			bit  = 1 << index;
+		if ((mask & bit) == 0) {
+			return 0;
+		}
+		int rank  = Integer.bitCount(mask & (bit - 1)),
+			child = children[node];
+		if ((mask & PACKED) != 0) {
+			return child + rank;
+		}
+		for(; rank > 0; rank--) {
+			child = siblings[child];
+		}
+		return child;
+	}
+
+	/**
+	 * Retrieves the mask of a node, with a bit set for each of its
+	 * 		children and the WORD bit set if the node ends a word.
+	 * 
+	 * @param node - the node to inspect
+	 * 
+	 * @return the mask of the node
+	 */
+	int mask(int node) {
+		return masks[node];
+	}
+
+	/**
+	 * Allocates a new, empty node, growing the arrays if needed.
+	 * 
+	 * @return the index of the new node
+	 */
+	int newNode() {
+		if (size == masks.length) {
+			masks    = Arrays.copyOf(masks, size * 2);
+			children = Arrays.copyOf(children, size * 2);
+			siblings = Arrays.copyOf(siblings, size * 2);
+		}
+		return size++;
+	}
+
+	/**
+	 * Inserts a node in the list of children of another,
+	 * 		keeping that list in alphabetical order.
+	 * 
+	 * @param node - the parent node
+	 * @param index - the position in the alphabet of the child's letter
+	 * @param child - the new child node
+	 */
+	private void link(int node, int index, int child) {
+		int bit  = 1 << index,
+			rank = Integer.bitCount(masks[node] & (bit - 1));
+		if (rank == 0) {
+			siblings[child] = children[node];
+			children[node]  = child;
+		} else {
+			int previous = children[node];
+			while(--rank > 0) {
+				previous = siblings[previous];
+			}
+			siblings[child]    = siblings[previous];
+			siblings[previous] = child;
+		}
+		masks[node] = (masks[node] | bit) & ~PACKED;
+	}
+
 	/**
 	 * A nested class whose objects keep the position of a Trie search,
 	 * 		i.e. one of its nodes (which is what its only field contains).
@@ -90,23 +501,23 @@ public class Trie implements Iterable<String> {
 	 * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/puzzle/Trie.Search.html
 	 */
 	public class Search {
-        Node node;
+        int node;
 
         /**
          * Creates a new instance out of a node of a Trie,
          * 		initializing this instance's field <i>node</i> with
-         * 		a reference to that object.
+         * 		that node's index.
          * 
          * @param node - the node to be referenced to from this Search object
          */
-        public Search(Node node) {
+        Search(int node) {
             this.node = node;
         }
 
         /**
          * Creates a new instances out of another Search object's node,
          * 		initializing this instance's field <i>node</i> with
-         * 		a reference to the given object's field.
+         * 		the given object's field.
          * 
          * @param search - the Search instance to "copy" from
          */
@@ -125,8 +536,13 @@ public class Trie implements Iterable<String> {
          * @return a boolean value, the outcome of said verification
          */
         boolean continueWith(char letter) {
-        	if (this.node.children.containsKey(letter)) {
-        		this.node = this.node.children.get(letter);
+        	int index = indexOf(letter);
+        	if (index < 0) {
+        		return false;
+        	}
+        	int child = child(this.node, index);
+        	if (child != 0) {
+        		this.node = child;
         		return true;
         	} else {
         		return false;
@@ -142,178 +558,298 @@ public class Trie implements Iterable<String> {
          * 			is a word
          */
         boolean isWord() {
-            if(this.node.isWord) {
-                return true;
-            } else {
-                return false;
-            }
+            return (mask(this.node) & WORD) != 0;
         }
     }
 	
 	/**
-	 * A node of a Trie, which may or may not contain other nodes
-	 * 		as its children, kept in a HashMap field for such purpose,
-	 * 		each identified by a character.<br>
-	 * A node may also be at a point of the Trie where the concatenation
-	 * 		of its parents' characters forms a word, so a boolean field
-	 * 		is kept to store that case. By default, nodes are not words.
-	 *
+	 * A mutable search of the Trie, that keeps the nodes of its path
+	 * 		in a fixed stack, so that it can go down with push() and
+	 * 		back up with pop(), as a backtracking search does,
+	 * 		without creating any object.<br>
+	 * The path is at most MAX_DEPTH letters long, the length
+	 * 		of the longest word of the Dictionary.
 	 */
-	class Node extends HashMap<Character,Node> {
-        private static final long serialVersionUID = 1L;
-        HashMap<Character,Node> children;
-        Boolean isWord;
+	public class Cursor {
+		private final int[] nodes;
+		private int         depth;
 
-        /**
-         * Creates an instance of this class and initializes all of its fields.
-         * 
-         */
-        public Node() {
-        	this.children = new HashMap<Character,Node>();
-            this.isWord = false;
-        }
+		/**
+		 * Creates a new instance at the root of the Trie.
+		 * 
+		 */
+		Cursor() {
+			this.nodes = new int[MAX_DEPTH + 1];
+			this.depth = 0;
+			this.nodes[0] = ROOT;
+		}
 
-        /**
-         * Searches this instance's children Collection for the character at
-         * 		the given position of the passed word, recursively calling
-         * 		the method for said node (creating it if required).
-         * It stops when the word's characters have all been "put" into
-         * 		the Trie, marking the last node as the end of a word.
-         * 
-         * @param word - the word to put into the Trie
-         * @param position - the index of word's character being put
-         */
-        public void put(String word, int position) {
-            if(word.length() > position) {
-                char key = word.charAt(position);
-                if (this.children.containsKey(key)) {
-                    this.children.get(key).put(word, position + 1);
-                } else {
-                    Node child = new Node();
-                    this.children.put(key, child);
-                    child.put(word, position + 1);
-                }
-            } else if (word.length() == position) {
-                this.isWord = true;
-            }
-        }
-    }
+		/**
+		 * Goes down to the child node of the current one with
+		 * 		the given letter, if there is one.
+		 * 		The cursor is not changed if there isn't.
+		 * 
+		 * @param letter - the character to go down with
+		 * 
+		 * @return a boolean value, true if the cursor moved
+		 */
+		public boolean push(char letter) {
+			int index = indexOf(letter);
+			if (index < 0 || depth == MAX_DEPTH) {
+				return false;
+			}
+			int child = child(nodes[depth], index);
+			if (child == 0) {
+				return false;
+			}
+			nodes[++depth] = child;
+			return true;
+		}
+
+		/**
+		 * Goes back up to the node before the last push().
+		 * 
+		 * @throws IllegalStateException - if the cursor is at the root
+		 */
+		public void pop() {
+			if (depth == 0) {
+				throw new IllegalStateException("Cursor already at the root");
+			}
+			depth--;
+		}
+
+		/**
+		 * Goes back to the root of the Trie.
+		 * 
+		 */
+		public void reset() {
+			depth = 0;
+		}
+
+		/**
+		 * Retrieves the number of letters of the current path.
+		 * 
+		 * @return the depth of the current node
+		 */
+		public int depth() {
+			return depth;
+		}
+
+		/**
+		 * Verifies if the current path is a word of the Trie.
+		 * 
+		 * @return a boolean value, true if the current node is a word
+		 */
+		public boolean isWord() {
+			return (mask(nodes[depth]) & WORD) != 0;
+		}
+	}
 	
 	/**
-	 * An iterator for the nodes of the Trie.
-	 * Based from the BTree example on the course's website,
-	 * 		on the topic of Concurrency.
-	 * It contains a Thread instance to allow concurrent iterations
-	 * 		over the Trie.
+	 * An iterator for the words of the Trie, in alphabetical order.<br>
+	 * It walks the Trie depth first, in this thread, keeping the nodes
+	 * 		of the current path in a stack, together with the letters 
+	 * 		of each still to be visited, and the word formed by the path.
+	 * 		Words are created only when they are returned.<br>
+	 * Only the subtrees of the root's children whose letters are
+	 * 		in a given mask are visited, so that the Trie can be split
+	 * 		among several iterators.
 	 * 
 	 * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/puzzle/Trie.NodeIterator.html
 	 */
-	public class NodeIterator implements Iterator<String>, Runnable {
-		Thread thread;
-		boolean terminated;
+	public class NodeIterator implements Iterator<String> {
+		int[]  nodes;
+		int[]  pending;
+		char[] word;
+		int    depth;
 		String nextWord;
 		
 		/**
-		 * Creates an instance and starts a new thread.
+		 * Creates an instance that visits the whole Trie.
 		 * 
 		 */
 		NodeIterator() {
-			thread = new Thread(this,"Node iterator");
-			thread.start();
-        }
+			this(LETTERS);
+		}
 
 		/**
-		 * Begins iterating from the root of the Trie,
-		 * 		building a String with the characters
-		 * 		it collects from visited nodes.
+		 * Creates an instance that visits only the subtrees of
+		 * 		the root's children for the given letters.
 		 * 
+		 * @param letters - the mask of the letters to visit from the root
 		 */
-		public void run() {
-			terminated = false;
-
-			visitValues(root, new StringBuilder());
-
-			synchronized (this) {
-				terminated = true;
-				handshake();
-			}
+		NodeIterator(int letters) {
+			nodes      = new int[16];
+			pending    = new int[16];
+			word       = new char[16];
+			depth      = 0;
+			nodes[0]   = ROOT;
+			pending[0] = mask(ROOT) & LETTERS & letters;
 		}
 
 		/**
-		 * Checks if the current point of the iteration is
-		 * 		at a leaf node
+		 * Checks if there is another word to visit,
+		 * 		advancing to it if needed.
 		 * 
-		 * @return a boolean value that represents if the
-		 * 		current point of iteration is at a leaf node
+		 * @return a boolean value that represents if there
+		 * 		is a next word
 		 */
 		public boolean hasNext() {
-			synchronized (this) {
-				if(! terminated)
-					handshake();
+			if (nextWord == null) {
+				nextWord = advance();
 			}
 			return nextWord != null;
 		}
 
 		/**
-		 * Advances to the next child node, updating the word
-		 * 		with the following character
+		 * Retrieves the next word of the iteration.
 		 * 
 		 * @return the next word "built" from the iteration
+		 * 
+		 * @throws NoSuchElementException - if there are no more words
 		 */
 		public String next() {
-			String word = nextWord;
-
-			synchronized (this) {
-				nextWord = null;
+			if (!hasNext()) {
+				throw new NoSuchElementException();
 			}
-			return word;
+			String next = nextWord;
+			nextWord = null;
+			return next;
 		}
         
 		/**
-		 * Visits all child nodes of the passed node,
-		 * 		recursively iterating over every one
-		 * 		below it.
-		 * It collects any character from parent nodes,
-		 * 		and also obtains the current node is a word,
-		 * 		so that the iterator can pass that information
-		 * 	    as well.
+		 * Removes, from the letters still to visit from the root,
+		 * 		the lower half of them, to be visited by another iterator
+		 * 		before this one continues.<br>
+		 * It is only possible between subtrees of the root, 
+		 * 		when no word was fetched in advance.
 		 * 
-		 * @param node - the node whose children will be visited
-		 * @param word - the word prefix of previously visited
-		 * 				 nodes
+		 * @return the mask of the letters removed, or 0 if there were
+		 * 			less than two, or a subtree is being visited
 		 */
-		private void visitValues(Node node, StringBuilder word) {
-			if(!node.children.isEmpty()) {
-				Set<Character> children = node.children.keySet();
-				for(char child: children) {										
-					visitValues(node.children.get(child), word.append(child));
-					
-					if(node.children.get(child).isWord) {
-						synchronized (this) {
-			                if(nextWord != null)
-			                    handshake();
-			                nextWord = word.toString();
-			                handshake();
-			            }
-					}
-					
-					word.deleteCharAt(word.length() - 1);
-				}
+		int split() {
+			int letters = depth == 0 && nextWord == null ? pending[0] : 0,
+				half    = Integer.bitCount(letters) / 2;
+			if (half == 0) {
+				return 0;
+			}
+			int upper = letters;
+			for(int count = half; count > 0; count--) {
+				upper &= upper - 1;
 			}
+			pending[0] = upper;
+			return letters & ~upper;
 		}
         
 		/**
-		 * Intermediary between concurrent threads, 
-		 * 		to control thread locks.
+		 * Walks the Trie, depth first, until the next node marked
+		 * 		as a word, going back up whenever a node has no more
+		 * 		children to visit.
+		 * 
+		 * @return the word of the next node marked as a word,
+		 * 			or null if there are none
+		 */
+		private String advance() {
+			while(depth >= 0) {
+				int letters = pending[depth];
+				if (letters == 0) {
+					depth--;
+					continue;
+				}
+				int index = Integer.numberOfTrailingZeros(letters),
+					child = child(nodes[depth], index);
+				pending[depth] = letters & (letters - 1);
+				word[depth]    = (char) ('A' + index);
+
+				if (++depth == nodes.length) {
+					nodes   = Arrays.copyOf(nodes, depth * 2);
+					pending = Arrays.copyOf(pending, depth * 2);
+					word    = Arrays.copyOf(word, depth * 2);
+				}
+				nodes[depth]   = child;
+				pending[depth] = mask(child) & LETTERS;
+
+				if ((mask(child) & WORD) != 0) {
+					return new String(word, 0, depth);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A Spliterator for the words of the Trie, in alphabetical order,
+	 * 		backed by a NodeIterator. It splits by handing over the first 
+	 * 		half of the root's subtrees still to visit, so the words of 
+	 * 		a Trie can be processed by a parallel stream.
+	 * 
+	 * @see wwwordz.puzzle.Trie.NodeIterator
+	 */
+	public class NodeSpliterator implements Spliterator<String> {
+		NodeIterator iterator;
+
+		/**
+		 * Creates an instance that visits only the subtrees of
+		 * 		the root's children for the given letters.
+		 * 
+		 * @param letters - the mask of the letters to visit from the root
+		 */
+		NodeSpliterator(int letters) {
+			iterator = new NodeIterator(letters);
+		}
+
+		/**
+		 * Passes the next word, if there is one, to the given action.
+		 * 
+		 * @param action - the action to perform on the word
+		 * 
+		 * @return a boolean value, true if there was a word
+		 */
+		public boolean tryAdvance(Consumer<? super String> action) {
+			if (iterator.hasNext()) {
+				action.accept(iterator.next());
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Splits the first half of the root's subtrees still to visit
+		 * 		into a new instance.
+		 * 
+		 * @return a Spliterator for the subtrees handed over,
+		 * 			or null if there were less than two left
+		 */
+		public Spliterator<String> trySplit() {
+			int letters = iterator.split();
+			return letters == 0 ? null : new NodeSpliterator(letters);
+		}
+
+		/**
+		 * The number of words is not known in advance.
 		 * 
+		 * @return Long.MAX_VALUE
 		 */
-		private void handshake() {
-            notify();
-            try {
-                wait();
-            } catch (InterruptedException cause) {
-                throw new RuntimeException("Unexpected interruption while waiting",cause);
-            }
-        }       
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		/**
+		 * Words are visited in alphabetical order, and only once.
+		 * 
+		 * @return the characteristics of this Spliterator
+		 */
+		public int characteristics() {
+			return ORDERED | SORTED | DISTINCT | NONNULL;
+		}
+
+		/**
+		 * Words are sorted in their natural order.
+		 * 
+		 * @return null, as the natural order is used
+		 */
+		public Comparator<? super String> getComparator() {
+			return null;
+		}
 	}
 }
\ No newline at end of file
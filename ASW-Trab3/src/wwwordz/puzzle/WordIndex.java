@@ -0,0 +1,110 @@
+package wwwordz.puzzle;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * An index of the words of a Trie, bucketed by length, to draw
+ * 		random words of a given range of lengths.<br><br>
+ * 
+ * The words are kept in a single array, sorted by length (and
+ * 		alphabetically within each length), and <i>start</i> keeps,
+ * 		for each length, the position of its first word. The words of
+ * 		a range of lengths are thus consecutive, and a uniformly random
+ * 		one is drawn in constant time, without creating any object.
+ */
+class WordIndex {
+	private final String[] words;
+	private final int[]    start;
+
+	/**
+	 * Creates the index of all words of a Trie, no longer than the given
+	 * 		maximum length.
+	 * 
+	 * @param trie - the Trie whose words are indexed
+	 * @param maxLength - the maximum length of the indexed words
+	 */
+	WordIndex(Trie trie, int maxLength) {
+		List<String> all = trie.stream()
+							   .filter(word -> word.length() <= maxLength)
+							   .collect(Collectors.toList());
+
+		words = new String[all.size()];
+		start = new int[maxLength + 2];
+
+		for(String word: all) {
+			start[word.length() + 1]++;
+		}
+		for(int length = 1; length < start.length; length++) {
+			start[length] += start[length - 1];
+		}
+
+		int[] next = start.clone();
+		for(String word: all) {
+			words[next[word.length()]++] = word;
+		}
+	}
+
+	/**
+	 * Retrieves the number of indexed words with a length in the given range.
+	 * 
+	 * @param minLength - the minimum length of the words
+	 * @param maxLength - the maximum length of the words
+	 * 
+	 * @return the number of words in the range
+	 */
+	int count(int minLength, int maxLength) {
+		int min = Math.max(minLength, 0),
+			max = Math.min(maxLength, start.length - 2);
+		return min > max ? 0 : start[max + 1] - start[min];
+	}
+
+	/**
+	 * Draws a uniformly random word with a length in the given range,
+	 * 		with the generator of the current thread.
+	 * 
+	 * @param minLength - the minimum length of the word
+	 * @param maxLength - the maximum length of the word
+	 * 
+	 * @return a random word, or null if there is none in the range
+	 */
+	String random(int minLength, int maxLength) {
+		int count = count(minLength, maxLength);
+		if (count == 0) {
+			return null;
+		}
+		return word(minLength, ThreadLocalRandom.current().nextInt(count));
+	}
+
+	/**
+	 * Draws a uniformly random word with a length in the given range.
+	 * 
+	 * @param minLength - the minimum length of the word
+	 * @param maxLength - the maximum length of the word
+	 * @param random - the generator of the random choice
+	 * 
+	 * @return a random word, or null if there is none in the range
+	 */
+	String random(int minLength, int maxLength, SplittableRandom random) {
+		int count = count(minLength, maxLength);
+		if (count == 0) {
+			return null;
+		}
+		return word(minLength, random.nextInt(count));
+	}
+
+	/**
+	 * Retrieves a word by its position among those with a length
+	 * 		of at least <i>minLength</i>.
+	 * 
+	 * @param minLength - the minimum length of the word
+	 * @param position - the position of the word
+	 * 
+	 * @return the word
+	 */
+	private String word(int minLength, int position) {
+		return words[start[Math.max(minLength, 0)] + position];
+	}
+}
@@ -1,5 +1,7 @@
 package wwwordz.server;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
@@ -7,6 +9,9 @@ import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import wwwordz.client.ManagerService;
 import wwwordz.game.Manager;
 import wwwordz.game.Round;
+import wwwordz.puzzle.Dictionary;
+import wwwordz.puzzle.PuzzleLibrary;
+import wwwordz.puzzle.PuzzlePool;
 import wwwordz.shared.Configs;
 import wwwordz.shared.Puzzle;
 import wwwordz.shared.Rank;
@@ -17,7 +22,11 @@ import wwwordz.shared.WWWordzException;
  * 		the synchronous interface of the class.
  * 
  * Initially, the server sets a Round's duration with the
- * 		default values in Configs class.
+ * 		default values in Configs class, and starts loading the
+ * 		Dictionary in the background, before the first round needs it.
+ * 		If there is a puzzle library, file "wwwordz.puzzles" in the
+ * 		working directory, rounds read their puzzles from it;
+ * 		otherwise, the server starts filling the PuzzlePool.
  * 
  * The methods of this class run in the same fashion: 
  * 		get Manager's single instance and call the equivalent method.
@@ -31,6 +40,19 @@ public class ManagerServiceImpl extends RemoteServiceServlet implements ManagerS
 		Round.setPlayStageDuration(Configs.getPlayStageDuration());
 		Round.setReportStageDuration(Configs.getReportStageDuration());
 		Round.setRankingStageDuration(Configs.getRankingStageDuration());
+		Dictionary.preload();
+
+		File library = new File(System.getProperty("user.dir"), "wwwordz.puzzles");
+		if (library.exists()) {
+			try {
+				Round.setLibrary(PuzzleLibrary.map(library));
+			} catch (IOException cause) {
+				cause.printStackTrace();
+			}
+		}
+		if (Round.getLibrary() == null) {
+			PuzzlePool.getInstance();
+		}
 	}
 
 	/**
@@ -70,16 +92,34 @@ public class ManagerServiceImpl extends RemoteServiceServlet implements ManagerS
 	}
 
 	/**
-	 * Attempts to set a player's points for the current round
+	 * Checks a word found by a player in the current round's puzzle
 	 * 
 	 * @param nick - the player's nickname
-	 * @param points - the number of points to assign to the player
+	 * @param word - the word found by the player
+	 * 
+	 * @return the points the word is worth, or 0 if it is not a solution
+	 * 
+	 * @throws WWWordzException - if player is not on the current round,
+	 * 						or if the method is not called on stage PLAY
+	 */
+	public int checkWord(String nick, String word) throws WWWordzException {
+		return Manager.getInstance().checkWord(nick, word);
+	}
+
+	/**
+	 * Attempts to score the words found by a player in the current round,
+	 * 		setting the player's points for it
+	 * 
+	 * @param nick - the player's nickname
+	 * @param words - the words found by the player
+	 * 
+	 * @return the points assigned to the player
 	 * 
 	 * @throws WWWordzException - if player is not on the current round,
 	 * 						or if the method is not called on stage REPORT
 	 */
-	public void setPoints(String nick, int points) throws WWWordzException {
-		Manager.getInstance().setPoints(nick, points);
+	public int submitWords(String nick, List<String> words) throws WWWordzException {
+		return Manager.getInstance().submitWords(nick, words);
 	}
 
 	/**
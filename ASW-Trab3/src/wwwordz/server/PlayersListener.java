@@ -0,0 +1,34 @@
+package wwwordz.server;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import wwwordz.game.Players;
+
+/**
+ * Closes the players when the web application stops, writing
+ * 		the changes still queued to their files, so that they
+ * 		are not left to the shutdown of the server: an application
+ * 		stopped or reloaded by the server leaves no thread behind.
+ * 
+ * @see wwwordz.game.Players
+ */
+public class PlayersListener implements ServletContextListener {
+
+	/**
+	 * Does nothing: the players are opened when first needed.
+	 * 
+	 * @param event - the event of the application starting
+	 */
+	public void contextInitialized(ServletContextEvent event) {
+	}
+
+	/**
+	 * Closes the players, if they were opened.
+	 * 
+	 * @param event - the event of the application stopping
+	 */
+	public void contextDestroyed(ServletContextEvent event) {
+		Players.close();
+	}
+}
@@ -1,7 +1,13 @@
 package wwwordz.shared;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * "A puzzle, containing a table and list of solutions. 
@@ -10,12 +16,20 @@ import java.util.List;
  * 		where consecutive letters are in neighboring cells on the grid
  * 		 and the letter in each cell is used only once."
  * 
+ * 
+ * The solutions are also indexed by word, so that checking a word,
+ * 		or scoring the words found by a player, takes constant time
+ * 		per word. The index is created on the first lookup, once per
+ * 		puzzle, and is not sent to the client with the puzzle.
+ * 
  *  @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/shared/Puzzle.html
  */
 public class Puzzle implements Serializable {
 	private static final long serialVersionUID = 1L;
 	Table table;
 	List<Solution> solutions;
+	long seed;
+	transient volatile Map<String,Solution> index;
 	
 	/**
 	 * Empty constructor
@@ -41,6 +55,24 @@ public class Puzzle implements Serializable {
 		this.table = table;
 	}
 
+	/**
+	 * Returns the seed this Puzzle was generated from.
+	 * 
+	 * @return the seed of this Puzzle
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Changes the seed this Puzzle was generated from.
+	 * 
+	 * @param seed - the seed of this Puzzle
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
 	/**
 	 * Returns the Solution list of this instance.
 	 * 
@@ -57,6 +89,64 @@ public class Puzzle implements Serializable {
 	 */
 	public void setSolutions(List<Solution> solutions) {
 		this.solutions = solutions;
+		this.index     = null;
+	}
+
+	/**
+	 * Retrieves the Solution of a given word.
+	 * 
+	 * @param word - the word to look for
+	 * 
+	 * @return the Solution of the word, or null if it is not a solution
+	 */
+	public Solution getSolution(String word) {
+		return getIndex().get(word);
+	}
+
+	/**
+	 * Scores a collection of words found in this Puzzle:
+	 * 		the sum of the points of the words that are solutions,
+	 * 		each counted only once. Other words are worth nothing.
+	 * 
+	 * @param words - the words found
+	 * 
+	 * @return the points of the words
+	 */
+	public int getPoints(Collection<String> words) {
+		Map<String,Solution> index  = getIndex();
+		Set<String>          scored = new HashSet<String>();
+		int points = 0;
+
+		for(String word: words) {
+			Solution solution = index.get(word);
+			if (solution != null && scored.add(word)) {
+				points += solution.getPoints();
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Retrieves the index of solutions by word, creating it
+	 * 		if there isn't one yet.
+	 * 
+	 * @return a map from each word to its Solution
+	 */
+	private Map<String,Solution> getIndex() {
+		Map<String,Solution> current = index;
+		if (current == null) {
+			synchronized (this) {
+				current = index;
+				if (current == null) {
+					current = new HashMap<String,Solution>(solutions.size() * 2);
+					for(Solution solution: solutions) {
+						current.put(solution.getWord(), solution);
+					}
+					index = current;
+				}
+			}
+		}
+		return current;
 	}
 	
 	
@@ -64,7 +154,17 @@ public class Puzzle implements Serializable {
 	 * A Solution is composed of a word, which can be found
 	 * 		in the enclosing Puzzle's table,
 	 * 		and a list of Cell instances in an order such that
-	 * 		each of the cells' letters form the word.
+	 * 		each of the cells' letters form the word.<br><br>
+	 * 
+	 * A Solution may also be kept packed: only its path, i.e. the index
+	 * 		of each of its cells (row by row, from 0), its length and
+	 * 		the Table the cells belong to. The lowest 4 bits of each index
+	 * 		are kept in a long, and the highest 2 (only needed in tables
+	 * 		larger than 4x4) in an int, the first cell in the lowest bits.
+	 * 		The word and the list of
+	 * 		cells are then derived from the table when asked for, so
+	 * 		they take no space, in memory or in the RPC payload
+	 * 		(where the table is sent only once, for all solutions).
 	 * 
 	 * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/shared/Puzzle.Solution.html
 	 */
@@ -72,6 +172,10 @@ public class Puzzle implements Serializable {
 		private static final long serialVersionUID = 1L;
 		String word;
 		List<Table.Cell> cells;
+		Table table;
+		long path;
+		int high;
+		int length;
 		
 		/**
 		 * Empty constructor.
@@ -91,23 +195,119 @@ public class Puzzle implements Serializable {
 		}
 
 		/**
-		 * Returns the <i>word</i> field of this Solution.
+		 * Creates a packed Solution instance, out of the path of
+		 * 		its cells in a table.
+		 * 
+		 * @param table - the Table where the word is at
+		 * @param path - the index of each cell, 4 bits each,
+		 * 				 the first in the lowest bits
+		 * @param length - the number of cells of the path
+		 */
+		public Solution(Table table, long path, int length) {
+			this(table, path, 0, length);
+		}
+
+		/**
+		 * Creates a packed Solution instance, out of the path of
+		 * 		its cells in a table that may be larger than 4x4.
+		 * 
+		 * @param table - the Table where the word is at
+		 * @param path - the lowest 4 bits of the index of each cell
+		 * @param high - the highest 2 bits of the index of each cell
+		 * @param length - the number of cells of the path
+		 */
+		public Solution(Table table, long path, int high, int length) {
+			this.table  = table;
+			this.path   = path;
+			this.high   = high;
+			this.length = length;
+		}
+
+		/**
+		 * Returns the <i>word</i> field of this Solution,
+		 * 		or the word formed by its path, if it is packed.
 		 * 
 		 * @return a String, which is the word that this SOlution
 		 * 		instance addresses to
 		 */
 		public String getWord() {
-			return word;
+			if (word != null) {
+				return word;
+			}
+			char[] letters = new char[length];
+			for(int k = 0; k < length; k++) {
+				letters[k] = table.getLetter(getIndex(k));
+			}
+			return new String(letters);
 		}
 
 		/**
 		 * Returns the list of Cell instances whose letters
-		 * 		make up the word of this Solution.
+		 * 		make up the word of this Solution, creating it
+		 * 		from its path, if it is packed.
 		 * 
 		 * @return a list of Cells that contain the Solution's word
 		 */
 		public List<Table.Cell> getCells() {
-			return cells;
+			if (table == null) {
+				return cells;
+			}
+			List<Table.Cell> list = new ArrayList<Table.Cell>(length);
+			for(int k = 0; k < length; k++) {
+				list.add(table.getCell(getIndex(k)));
+			}
+			return list;
+		}
+
+		/**
+		 * Retrieves the index of a cell of the path of a packed Solution.
+		 * 
+		 * @param position - the position of the cell in the path
+		 * 
+		 * @return the index of the cell at that position in the table
+		 */
+		private int getIndex(int position) {
+			return (int) (path >>> 4 * position) & 0xF
+				 | (high >>> 2 * position & 0x3) << 4;
+		}
+
+		/**
+		 * Checks if this Solution is packed.
+		 * 
+		 * @return a boolean value, true if the word and cells
+		 * 		are derived from a path
+		 */
+		public boolean isPacked() {
+			return table != null;
+		}
+
+		/**
+		 * Returns the path of a packed Solution.
+		 * 
+		 * @return the index of each cell, 4 bits each,
+		 * 		the first in the lowest bits (0 if not packed)
+		 */
+		public long getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns the highest bits of the path of a packed Solution.
+		 * 
+		 * @return the highest 2 bits of the index of each cell,
+		 * 		the first in the lowest bits (0 if not packed)
+		 */
+		public int getHighPath() {
+			return high;
+		}
+
+		/**
+		 * Returns the number of letters of this Solution.
+		 * 
+		 * @return the length of the word
+		 */
+		public int getLength() {
+			return table != null ? length : word.length();
 		}
 		
 		/**
@@ -121,7 +321,7 @@ public class Puzzle implements Serializable {
 		 * 			is worth
 		 */
 		public int getPoints() {
-			int length = this.getWord().length();
+			int length = this.getLength();
 			int points = 1;
 			
 			for(int i = length; i > 3; i--) { 
@@ -5,33 +5,89 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * "A table composed of a collection of cells 
  * 		indexed by row and column positions."<br><br>
  * 
- * The <i>table</i>table, a Cell matrix, stores the actual
- * 		table's information.
+ * The <i>letters</i> array stores the actual table's information:
+ * 		the letter of each cell, row by row ('\0' if empty), so that
+ * 		a table is only two objects, created and copied cheaply.
+ * 		Cell instances are only views of a cell, created when first
+ * 		asked for (mostly by the client), and kept until the table
+ * 		is sent elsewhere; setting the letter of a Cell also sets it
+ * 		in the table.<br><br>
+ * 
+ * Tables are square, and have 4 rows and columns by default,
+ * 		but may have from 1 to MAX_SIZE (8), so that the cells of
+ * 		any table can be numbered with 6 bits, and sets of cells
+ * 		kept in a long.<br><br>
+ * 
+ * Cells can also be reached by their index, row by row from 0.
+ * 		The neighbors of each cell, as an array of indices and
+ * 		as a mask with a bit per index, are computed once for every
+ * 		size, when this class is loaded, and shared by all tables,
+ * 		so walking through neighbors by index never allocates.
  *
  * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/shared/Table.html
  */
 public class Table implements Iterable<Table.Cell>, Serializable {
 	private static final long serialVersionUID = 1L;
-	private static final int MATRIX_SIZE = 4;
-	Cell[][] table;
+	public static final int DEFAULT_SIZE = 4,
+							MAX_SIZE	 = 8;
+	private static final int[][][] NEIGHBORS      = new int[MAX_SIZE + 1][][];
+	private static final long[][]  NEIGHBOR_MASKS = new long[MAX_SIZE + 1][];
+	char[] letters;
+	int size;
+	transient Cell[] cells;
+
+	static {
+		for(int size = 1; size <= MAX_SIZE; size++) {
+			NEIGHBORS[size]      = new int[size * size][];
+			NEIGHBOR_MASKS[size] = new long[size * size];
+			for(int index = 0; index < size * size; index++) {
+				int row    = index / size,
+					column = index % size,
+					count  = 0;
+				int[] neighbors = new int[8];
+				for(int i = Math.max(row - 1, 0); i <= Math.min(row + 1, size - 1); i++) {
+					for(int j = Math.max(column - 1, 0); j <= Math.min(column + 1, size - 1); j++) {
+						if (i != row || j != column) {
+							neighbors[count++] = i * size + j;
+							NEIGHBOR_MASKS[size][index] |= 1L << (i * size + j);
+						}
+					}
+				}
+				NEIGHBORS[size][index] = Arrays.copyOf(neighbors, count);
+			}
+		}
+	}
 	
 	/**
 	 * Creates a Table instance whose <i>table</i> matrix is set
-	 * 		to have only empty cells.
+	 * 		to have only empty cells, with the default size.
 	 * 
 	 */
 	public Table() {
-		this.table = new Cell[MATRIX_SIZE + 2][MATRIX_SIZE + 2]; 
-		for(int i = 1; i <= MATRIX_SIZE; i++) {
-			for(int j = 1; j <= MATRIX_SIZE; j++) {
-				this.table[i][j] =  new Cell(i, j);
-			}
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Creates a Table instance whose <i>table</i> matrix is set
+	 * 		to have only empty cells, with the given size.
+	 * 
+	 * @param size - the number of rows (and columns) of the table
+	 * 
+	 * @throws IllegalArgumentException - if the size is not between
+	 * 		1 and MAX_SIZE
+	 */
+	public Table(int size) {
+		if (size < 1 || size > MAX_SIZE) {
+			throw new IllegalArgumentException("Invalid table size: " + size);
 		}
+		this.size    = size;
+		this.letters = new char[size * size];
 	}
 	
 	/**
@@ -42,14 +98,160 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * 
 	 * @param data - the String array with the same size as the table's
 	 * 				 number of lines
+	 * 
+	 * @throws IllegalArgumentException - if the number of lines is not
+	 * 		between 1 and MAX_SIZE, or a line does not have
+	 * 		as many characters as there are lines
 	 */
 	public Table(String[] data) {
-		this.table = new Cell[MATRIX_SIZE + 2][MATRIX_SIZE + 2];
-		for(int i = 1; i <= MATRIX_SIZE; i++) {
-			for(int j = 1; j <= MATRIX_SIZE; j++) {
-				this.table[i][j] = new Cell(i, j, (data[i - 1].charAt(j - 1)));
+		if (data.length < 1 || data.length > MAX_SIZE) {
+			throw new IllegalArgumentException("Invalid table size: " + data.length);
+		}
+		for(String row: data) {
+			if (row == null || row.length() != data.length) {
+				throw new IllegalArgumentException("Invalid table row: " + row);
 			}
 		}
+		this.size    = data.length;
+		this.letters = new char[size * size];
+		for(int i = 0; i < size; i++) {
+			for(int j = 0; j < size; j++) {
+				this.letters[i * size + j] = data[i].charAt(j);
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of this table, with the same letters,
+	 * 		that can be changed independently.
+	 * 
+	 * @return a new Table instance equal to this one
+	 */
+	public Table copy() {
+		Table copy = new Table(size);
+		System.arraycopy(letters, 0, copy.letters, 0, letters.length);
+		return copy;
+	}
+
+	/**
+	 * Retrieves the number of rows (and columns) of this table.
+	 * 
+	 * @return the size of this table
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Retrieves the number of cells of this table.
+	 * 
+	 * @return the number of cells, size * size
+	 */
+	public int getCellCount() {
+		return size * size;
+	}
+
+	/**
+	 * Retrieves the index of a Cell instance of this table,
+	 * 		numbering cells row by row, from 0.
+	 * 
+	 * @param cell - a Cell of this table
+	 * 
+	 * @return the index of the cell
+	 */
+	public int indexOf(Cell cell) {
+		return (cell.row - 1) * size + cell.column - 1;
+	}
+
+	/**
+	 * Retrieves a Cell instance by its index, creating it (and the
+	 * 		other cells of the table) if it wasn't asked for before.
+	 * 
+	 * @param index - the index of the cell, from 0 to getCellCount() - 1
+	 * 
+	 * @return the Cell instance with the given index
+	 */
+	public Cell getCell(int index) {
+		if (cells == null) {
+			Cell[] views = new Cell[letters.length];
+			for(int k = 0; k < views.length; k++) {
+				views[k] = new Cell(k / size + 1, k % size + 1, letters[k]);
+				views[k].table = this;
+			}
+			cells = views;
+		}
+		return cells[index];
+	}
+
+	/**
+	 * Retrieves the letter of the cell with a given index.
+	 * 
+	 * @param index - the index of the cell
+	 * 
+	 * @return the character of the cell
+	 */
+	public char getLetter(int index) {
+		return letters[index];
+	}
+
+	/**
+	 * Changes the letter of the cell with a given index.
+	 * 
+	 * @param index - the index of the cell
+	 * @param letter - the new character for the cell to store
+	 */
+	public void setLetter(int index, char letter) {
+		letters[index] = letter;
+		if (cells != null) {
+			cells[index].letter = letter;
+		}
+	}
+
+	/**
+	 * Checks if the cell with a given index is empty.
+	 * 
+	 * @param index - the index of the cell
+	 * 
+	 * @return a boolean value, true if the cell has no letter
+	 */
+	public boolean isEmpty(int index) {
+		return letters[index] == '\0';
+	}
+
+	/**
+	 * Retrieves the number of neighbors of the cell with a given index.
+	 * 
+	 * @param index - the index of the cell
+	 * 
+	 * @return the number of neighbors, from 3 to 8 (fewer on tables
+	 * 		smaller than 2x2)
+	 */
+	public int getNeighborCount(int index) {
+		return NEIGHBORS[size][index].length;
+	}
+
+	/**
+	 * Retrieves the index of a neighbor of the cell with a given index.
+	 * 		Neighbors are numbered row by row, as cells are.
+	 * 
+	 * @param index - the index of the cell
+	 * @param neighbor - which neighbor, from 0 to getNeighborCount(index) - 1
+	 * 
+	 * @return the index of the neighbor
+	 */
+	public int getNeighbor(int index, int neighbor) {
+		return NEIGHBORS[size][index][neighbor];
+	}
+
+	/**
+	 * Retrieves the neighbors of the cell with a given index, as a mask.
+	 * 
+	 * @param index - the index of the cell
+	 * 
+	 * @return a mask with the bit of each neighbor's index set
+	 */
+	public long getNeighborMask(int index) {
+		return NEIGHBOR_MASKS[size][index];
 	}
 
 	/**
@@ -62,7 +264,7 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * @return the character of the point Cell instance
 	 */
 	public char getLetter(int row, int column) {
-		return this.table[row][column].getLetter();
+		return letters[(row - 1) * size + column - 1];
 	}
 	
 	/**
@@ -75,7 +277,7 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * 
 	 */
 	public void setLetter(int row, int column, char letter) {
-		this.table[row][column].setLetter(letter);
+		setLetter((row - 1) * size + column - 1, letter);
 	}
 	
 	/**
@@ -86,22 +288,22 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * @return the complete list of empty cells of the table
 	 */
 	public List<Cell> getEmptyCells() {
-		List<Cell> cells = new ArrayList<Cell>();
-		for(int i = 1; i <= MATRIX_SIZE; i++) {
-			for(int j = 1; j <= MATRIX_SIZE; j++) {
-				if(this.table[i][j].isEmpty()) {
-					cells.add(this.table[i][j]);
-				}
+		List<Cell> empty = new ArrayList<Cell>();
+		for(int index = 0; index < letters.length; index++) {
+			if(isEmpty(index)) {
+				empty.add(getCell(index));
 			}
 		}
-		return cells;
+		return empty;
 	}
 	
 	/**
-	 * Searches all of the actual adjacent cells of a
-	 * 		given Cell instance, and adds the actual
-	 * 		neighbors, i.e. cells that are not border
-	 * 		cells, to a list of Cells.
+	 * Creates a list with the actual adjacent cells of a
+	 * 		given Cell instance, i.e. its neighbors that are
+	 * 		not border cells.<br>
+	 * Code walking through neighbors often should rather use
+	 * 		the index based getNeighbor() and getNeighborMask(),
+	 * 		that do not allocate.
 	 * 
 	 * @param cell - the Cell whose neighbors will be
 	 * 				 retrieved
@@ -109,31 +311,30 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * @return the list of neighbors of the given Cell
 	 */
 	public List<Cell> getNeighbors(Cell cell) {
-		List<Cell> cells = new ArrayList<Cell>();
-		Cell neighbor;
-		for(int i = cell.row - 1; i <= cell.row + 1; i++) {
-			for(int j = cell.column - 1; j <= cell.column + 1; j++) {
-				neighbor = this.table[i][j];
-				if(!cell.equals(neighbor) && neighbor != null) {
-					cells.add(neighbor);
-				}
-			}
+		int[] neighbors = NEIGHBORS[size][indexOf(cell)];
+		List<Cell> list = new ArrayList<Cell>(neighbors.length);
+		for(int neighbor: neighbors) {
+			list.add(getCell(neighbor));
 		}
-		return cells;
+		return list;
 	}
 	
 	/**
-	 * Retrieves a Cell instance, kept at a given position in the
-	 * 		<i>table</i> matrix.
+	 * Retrieves a Cell instance, at a given position in the table.
+	 * 		Rows and columns are numbered from 1, and positions
+	 * 		outside the table are border cells, i.e. null.
 	 * 
-	 * @param row - the row of the matrix to point at
-	 * @param column - the column of the matrix to point at
+	 * @param row - the row of the table to point at
+	 * @param column - the column of the table to point at
 	 * 
 	 * @return the Cell instance corresponding to the given
-	 * 		row and column
+	 * 		row and column, or null if it is a border cell
 	 */
 	public Cell getCell(int row, int column) {
-		return this.table[row][column];
+		if (row < 1 || row > size || column < 1 || column > size) {
+			return null;
+		}
+		return getCell((row - 1) * size + column - 1);
 	}
 
 	/**
@@ -142,7 +343,7 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * @return an Iterator instance for Cells
 	 */
 	public Iterator<Cell> iterator() {
-		return new CellIterator(table);
+		return new CellIterator();
 	}
 	
 
@@ -154,20 +355,17 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * @return a String representation of this instance of Table
 	 */
 	public String toString() {
-		return "Table [table=" + Arrays.toString(table) + "]";
+		return "Table [size=" + size + ", letters=" + new String(letters) + "]";
 	}
 
 	/**
 	 * @Override
-	 * hashCode() method for Table
+	 * hashCode() method for Table, computed over the letters only.
 	 * 
 	 * @return an integer hashcode of this instance
 	 */
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + Arrays.deepHashCode(table);
-		return result;
+		return Arrays.hashCode(letters);
 	}
 
 	/**
@@ -192,7 +390,7 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 		if (getClass() != obj.getClass())
 			return false;
 		Table other = (Table) obj;
-		if (!Arrays.deepEquals(table, other.table))
+		if (!Arrays.equals(letters, other.letters))
 			return false;
 		return true;
 	}
@@ -203,7 +401,9 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	 * Contains row and column indices, its position on the Table instance,
 	 * 		and the letter it "may" hold.
 	 * A Cell may also be null, if it is a border cell, which is not relevant
-	 * 		to the actual game.
+	 * 		to the actual game.<br>
+	 * A Cell created by a Table is a view of one of its cells: setting
+	 * 		its letter also sets the letter in the table.
 	 * 
 	 * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/shared/Table.Cell.html
 	 */
@@ -212,6 +412,7 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 		int row;
 		int column;
 		char letter;
+		transient Table table;
 
 		/**
 		 * Empty constructor
@@ -279,6 +480,9 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 		 */
 		public void setLetter(char letter) {
 			this.letter = letter;
+			if (table != null) {
+				table.letters[table.indexOf(this)] = letter;
+			}
 		}
 		
 		/**
@@ -340,44 +544,31 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 	
 	/**
 	 * "An iterator over cells in this table."<br>
-	 * Fields <i>row</i> and <i>column</i> are used to point
-	 * 		to any Cell in this table during the iteration.
+	 * Field <i>index</i> is used to point to the next Cell
+	 * 		in this table during the iteration.
 	 *
 	 * @see https://www.dcc.fc.up.pt/~zp/aulas/1920/asw/api/wwwordz/shared/Table.CellIterator.html
 	 */
 	public class CellIterator implements Iterator<Table.Cell> {
-			int row;
-			int column;
-			Cell table[][];
+			int index;
 			
 			/**
-			 * Creates an instance of this class by setting the initial row
-			 * 		to the first of the matrix, 
-			 * 		and the column to the left border column of the matrix,
-			 * 	    considering that the iteration will begin by asking for
-			 * 		the next cell, the actual first 
-			 * 		(i.e. the Cell in position (1,1) in the table Matrix).
+			 * Creates an instance of this class by setting the index
+			 * 		to the first cell of the table
+			 * 		(i.e. the Cell in position (1,1)).
 			 */
-			CellIterator(Cell t[][]) {
-				this.row    = 1;
-				this.column = 0;
-				this.table  = t;
+			CellIterator() {
+				this.index = 0;
 			}
 			
 			/**
-			 * Checks if there is a non-border Cell next to the current one, 
-			 * 		whether it is on the column to the right of this one,
-			 * 		or on the first position of the next row.
+			 * Checks if there is a Cell after the current one.
 			 * 
 			 * @return a boolean value, representing if the current Cell
 			 * 		is proceeded by another
 			 */
 			public boolean hasNext() {
-				if(table[row][column+1] == null && table[row+1][1] == null) {
-					return false;
-				} else {
-					return true;
-				}
+				return index < letters.length;
 			}
 			
 			/**
@@ -387,12 +578,10 @@ public class Table implements Iterable<Table.Cell>, Serializable {
 			 * @return a Cell instance that follows the current one
 			 */
 			public Table.Cell next() {
-				if (column + 1 <= MATRIX_SIZE) {
-					return table[row][++column];
-				} else {
-					column = 1;
-					return table[++row][1];
+				if (!hasNext()) {
+					throw new NoSuchElementException();
 				}
+				return getCell(index++);
 			}
 
 			/**
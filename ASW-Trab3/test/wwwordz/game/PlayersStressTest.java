@@ -0,0 +1,221 @@
+package wwwordz.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import wwwordz.shared.WWWordzException;
+
+/**
+ * A multithreaded stress test of Players, showing that no registration
+ * 		and no points are lost under contention, in memory or on disk.<br><br>
+ * 
+ * Many threads register the same nicks at once, each with a password
+ * 		of its own: exactly one of them must create each player.
+ * 		Then all threads add one point at a time to a few players,
+ * 		chosen at random, so that most changes contend for the same
+ * 		players: the accumulated points of those players must add up
+ * 		to the number of points added. Finally, the players are recovered
+ * 		from their files, into a new store, and must be equal
+ * 		to those in memory.<br><br>
+ * 
+ * It is run as a program, and exits with status 1 if anything was lost:
+ * 		<pre>java wwwordz.game.PlayersStressTest [mapped]</pre>
+ * 		where <i>mapped</i> keeps the players in memory-mapped files
+ * 		(see Players.setMapped()).
+ * 
+ * @see wwwordz.game.Players
+ */
+public class PlayersStressTest {
+	private static final int THREADS = 32,
+							 NICKS   = 100,
+							 HOT     = 50,
+							 CHANGES = 20000;
+	private static final AtomicIntegerArray creators = new AtomicIntegerArray(NICKS);
+
+	/**
+	 * Runs the test in a new temporary directory.
+	 * 
+	 * @param args - "mapped" to keep the players in memory-mapped files
+	 * 
+	 * @throws Exception - if the test cannot run
+	 */
+	public static void main(String[] args) throws Exception {
+		boolean mapped = args.length > 0 && args[0].equals("mapped");
+		File    home   = Files.createTempDirectory("players").toFile();
+
+		Players.setMapped(mapped);
+		Players.setHome(home);
+		Players players = Players.getInstance();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		int lost = 0;
+
+		try {
+			lost += register(players, executor);
+			lost += score(players, executor);
+			lost += recover(players, home, mapped);
+		} finally {
+			executor.shutdown();
+		}
+		System.out.println(lost == 0 ? "OK" : "FAILED");
+		System.exit(lost == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Has all threads register the same nicks at once,
+	 * 		each with a password of its own.
+	 * 
+	 * @param players - the players
+	 * @param executor - the threads
+	 * 
+	 * @return the number of nicks not created exactly once
+	 * 		(the thread that created each is kept in <i>creators</i>)
+	 * 
+	 * @throws Exception - if a thread fails
+	 */
+	private static int register(Players players, ExecutorService executor)
+	throws Exception {
+		AtomicIntegerArray created = new AtomicIntegerArray(NICKS);
+		CyclicBarrier      start   = new CyclicBarrier(THREADS);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		for(int thread = 0; thread < THREADS; thread++) {
+			int    creator  = thread;
+			String password = "password" + thread;
+			tasks.add(() -> {
+				start.await();
+				for(int nick = 0; nick < NICKS; nick++) {
+					if (players.verify("nick" + nick, password)) {
+						created.incrementAndGet(nick);
+						creators.set(nick, creator);
+					}
+				}
+				return null;
+			});
+		}
+		run(executor, tasks);
+
+		int wrong = 0;
+		for(int nick = 0; nick < NICKS; nick++) {
+			if (created.get(nick) != 1) {
+				wrong++;
+			}
+		}
+		System.out.println("registration: " + NICKS + " nicks by " + THREADS
+						 + " threads, not created exactly once: " + wrong);
+		return wrong;
+	}
+
+	/**
+	 * Has all threads add one point at a time to a few players,
+	 * 		chosen at random.
+	 * 
+	 * @param players - the players
+	 * @param executor - the threads
+	 * 
+	 * @return the number of points lost
+	 * 
+	 * @throws Exception - if a thread fails
+	 */
+	private static int score(Players players, ExecutorService executor)
+	throws Exception {
+		CyclicBarrier      start = new CyclicBarrier(THREADS);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		for(int thread = 0; thread < THREADS; thread++) {
+			Random random = new Random(thread);
+			tasks.add(() -> {
+				start.await();
+				for(int change = 0; change < CHANGES; change++) {
+					players.addPoints("nick" + random.nextInt(HOT), 1);
+				}
+				return null;
+			});
+		}
+		long begin = System.nanoTime();
+		run(executor, tasks);
+		long time  = System.nanoTime() - begin;
+
+		long expected    = (long) THREADS * CHANGES,
+			 accumulated = 0;
+		for(int nick = 0; nick < HOT; nick++) {
+			accumulated += players.getPlayer("nick" + nick).getAccumulated();
+		}
+		System.out.printf("points: %d threads adding 1 point %d times to %d players,"
+						+ " %d points added, %d lost (%.0f changes/s)%n",
+						  THREADS, CHANGES, HOT, accumulated, expected - accumulated,
+						  expected * 1e9 / time);
+		return (int) (expected - accumulated);
+	}
+
+	/**
+	 * Writes all changes to disk and recovers the players
+	 * 		from their files, comparing them to those in memory.
+	 * 
+	 * @param players - the players
+	 * @param home - the directory of the files of the players
+	 * @param mapped - true if the players are in memory-mapped files
+	 * 
+	 * @return the number of players that differ
+	 * 
+	 * @throws IOException - if the files cannot be read
+	 * @throws WWWordzException - if a player is missing
+	 */
+	private static int recover(Players players, File home, boolean mapped)
+	throws IOException, WWWordzException {
+		players.sync();
+
+		PlayerStore         store     = mapped ? new MappedPlayerStore(home)
+											   : new PlayerLog(home);
+		Map<String,Player>  recovered = new HashMap<String,Player>(store.recover());
+		int                 differ    = 0;
+
+		for(int nick = 0; nick < NICKS; nick++) {
+			Player memory = players.getPlayer("nick" + nick),
+				   disk   = recovered.containsKey("nick" + nick)
+						  ? recovered.get("nick" + nick) : store.load("nick" + nick);
+			if (memory == null) {
+				throw new WWWordzException("Player not found\n");
+			}
+			if (disk == null
+			|| disk.getPoints() != memory.getPoints()
+			|| disk.getAccumulated() != memory.getAccumulated()
+			|| !disk.checkPassword("password" + creators.get(nick))) {
+				differ++;
+			}
+		}
+		System.out.println("recovery: " + NICKS + " players read back,"
+						 + " differing from memory: " + differ);
+		return differ;
+	}
+
+	/**
+	 * Runs tasks in the threads of an executor and waits for all of them.
+	 * 
+	 * @param executor - the threads
+	 * @param tasks - the tasks, one per thread
+	 * 
+	 * @throws Exception - if a task fails
+	 */
+	private static void run(ExecutorService executor, List<Callable<Void>> tasks)
+	throws Exception {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for(Callable<Void> task: tasks) {
+			futures.add(executor.submit(task));
+		}
+		for(Future<Void> future: futures) {
+			future.get();
+		}
+	}
+}